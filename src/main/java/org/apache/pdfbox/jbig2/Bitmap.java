@@ -55,6 +55,22 @@ public class Bitmap {
     bitmap = new byte[this.height * this.rowStride];
   }
 
+  /**
+   * Creates a bitmap of the given size without allocating its byte array. Used by subclasses that
+   * provide the pixel data themselves.
+   * 
+   * @param width - The real width of the bitmap in pixels.
+   * @param height - The real height of the bitmap in pixels.
+   * @param data - The byte array holding the pixels or {@code null}.
+   */
+  Bitmap(int width, int height, byte[] data) {
+    this.height = height;
+    this.width = width;
+    this.rowStride = (width + 7) >> 3;
+
+    bitmap = data;
+  }
+
   /**
    * Returns the value of a pixel specified by the given coordinates.
    * <p>
@@ -188,6 +204,51 @@ public class Bitmap {
     return rowStride;
   }
 
+  /**
+   * Returns a {@link SubBitmap} that refers to the given region of this bitmap. The region's pixels
+   * are read from this bitmap's bytes by their bit offset instead of being copied. This bitmap must
+   * not be modified as long as the returned bitmap may still be accessed.
+   * 
+   * @param roi - The region of this bitmap, must lie within its bounds.
+   * @return A bitmap with the size of {@code roi} and the same content as the region.
+   */
+  public Bitmap subBitmap(Rectangle roi) {
+    return new SubBitmap(this, roi);
+  }
+
+  /**
+   * Checks whether the given region of this bitmap contains white pixels only.
+   * 
+   * @param roi - The region to check, must lie within the bounds of this bitmap.
+   * @return {@code true} if no pixel of the region is black.
+   */
+  public boolean isBlank(Rectangle roi) {
+    if (roi.width <= 0 || roi.height <= 0) {
+      return true;
+    }
+
+    final int first = roi.x >> 3;
+    final int last = (roi.x + roi.width - 1) >> 3;
+    final int firstMask = 0xff >>> (roi.x & 7);
+    final int lastMask = (0xff << (7 - ((roi.x + roi.width - 1) & 7))) & 0xff;
+
+    for (int y = roi.y, lineStart = roi.y * rowStride; y < roi.y + roi.height; y++, lineStart += rowStride) {
+      for (int i = first; i <= last; i++) {
+        int mask = 0xff;
+        if (i == first) {
+          mask &= firstMask;
+        }
+        if (i == last) {
+          mask &= lastMask;
+        }
+        if ((getByteAsInteger(lineStart + i) & mask) != 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   public Rectangle getBounds() {
     return new Rectangle(0, 0, width, height);
   }
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.pdfbox.jbig2.err.JBIG2Exception;
+import org.apache.pdfbox.jbig2.io.ByteBufferImageInputStream;
+
+/**
+ * Decodes JBIG2 data that is already held in memory, typically a stream embedded in a PDF, without
+ * the Image I/O framework.
+ * <p>
+ * Globals decoded with {@link #decodeGlobals(byte[])} may be passed to any number of decodings,
+ * including concurrent ones, and their symbol dictionaries are decoded only once. Unlike the
+ * {@link JBIG2ImageReader}, this class doesn't put the decoded bitmaps into the page cache.
+ */
+public final class JBIG2Decoder {
+
+  private JBIG2Decoder() {
+  }
+
+  /**
+   * Decodes the global segments of embedded JBIG2 data, e.g. the {@code JBIG2Globals} stream of a
+   * PDF. The array is not copied, so it must not be modified while the globals are in use.
+   * 
+   * @param data - The globals data.
+   * @return The decoded {@link JBIG2Globals}.
+   * @throws IOException if the data can't be parsed.
+   */
+  public static JBIG2Globals decodeGlobals(byte[] data) throws IOException {
+    return decodeGlobals(ByteBuffer.wrap(data));
+  }
+
+  /**
+   * Decodes the global segments of embedded JBIG2 data, e.g. the {@code JBIG2Globals} stream of a
+   * PDF. The remaining bytes of the buffer are read without changing its position. They are not
+   * copied, so they must not be modified while the globals are in use.
+   * 
+   * @param data - The globals data.
+   * @return The decoded {@link JBIG2Globals}.
+   * @throws IOException if the data can't be parsed.
+   */
+  public static JBIG2Globals decodeGlobals(ByteBuffer data) throws IOException {
+    return new JBIG2Document(new ByteBufferImageInputStream(data)).getGlobalSegments();
+  }
+
+  /**
+   * Decodes the first page of the given JBIG2 data.
+   * 
+   * @param data - The JBIG2 data, either a complete file or data embedded in another format.
+   * @param globals - The global segments the data refers to, or {@code null}.
+   * @return The decoded page bitmap.
+   * @throws IOException if the data can't be decoded.
+   */
+  public static Bitmap decode(byte[] data, JBIG2Globals globals) throws IOException {
+    return decode(ByteBuffer.wrap(data), 1, globals);
+  }
+
+  /**
+   * Decodes the given page of the given JBIG2 data.
+   * 
+   * @param data - The JBIG2 data, either a complete file or data embedded in another format.
+   * @param pageNumber - The number of the page, starting at {@code 1}.
+   * @param globals - The global segments the data refers to, or {@code null}.
+   * @return The decoded page bitmap.
+   * @throws IOException if the data can't be decoded or doesn't contain the page.
+   */
+  public static Bitmap decode(byte[] data, int pageNumber, JBIG2Globals globals) throws IOException {
+    return decode(ByteBuffer.wrap(data), pageNumber, globals);
+  }
+
+  /**
+   * Decodes the first page of the given JBIG2 data. The remaining bytes of the buffer are read
+   * without changing its position.
+   * 
+   * @param data - The JBIG2 data, either a complete file or data embedded in another format.
+   * @param globals - The global segments the data refers to, or {@code null}.
+   * @return The decoded page bitmap.
+   * @throws IOException if the data can't be decoded.
+   */
+  public static Bitmap decode(ByteBuffer data, JBIG2Globals globals) throws IOException {
+    return decode(data, 1, globals);
+  }
+
+  /**
+   * Decodes the given page of the given JBIG2 data. The remaining bytes of the buffer are read
+   * without changing its position.
+   * 
+   * @param data - The JBIG2 data, either a complete file or data embedded in another format.
+   * @param pageNumber - The number of the page, starting at {@code 1}.
+   * @param globals - The global segments the data refers to, or {@code null}.
+   * @return The decoded page bitmap.
+   * @throws IOException if the data can't be decoded or doesn't contain the page.
+   */
+  public static Bitmap decode(ByteBuffer data, int pageNumber, JBIG2Globals globals) throws IOException {
+    if (pageNumber < 1)
+      throw new IllegalArgumentException("Page numbers start at 1: " + pageNumber);
+
+    final JBIG2Document document = new JBIG2Document(new ByteBufferImageInputStream(data), globals);
+
+    final JBIG2Page page = document.getPage(pageNumber);
+    if (page == null) {
+      throw new IOException("The data does not contain page " + pageNumber + ".");
+    }
+
+    try {
+      return page.getBitmap();
+    } catch (JBIG2Exception e) {
+      throw new IOException(e.getMessage());
+    }
+  }
+
+}
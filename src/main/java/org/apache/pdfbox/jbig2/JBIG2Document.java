@@ -104,6 +104,9 @@ class JBIG2Document {
    */
   private JBIG2Globals globalSegments;
 
+  /** Decides how long the pages' segments are kept, created on demand. */
+  private SegmentLifetimeManager segmentLifetimeManager;
+
   protected JBIG2Document(ImageInputStream input) throws IOException {
     this(input, null);
   }
@@ -144,10 +147,23 @@ class JBIG2Document {
    * 
    * @return The requested {@link JBIG2Page}.
    */
-  protected JBIG2Page getPage(int pageNumber) {
+  protected synchronized JBIG2Page getPage(int pageNumber) {
     return pages.get(pageNumber);
   }
 
+  /**
+   * Returns the {@link SegmentLifetimeManager} that keeps track of the segments the pages of this
+   * document still need.
+   * 
+   * @return The {@link SegmentLifetimeManager} of this document.
+   */
+  synchronized SegmentLifetimeManager getSegmentLifetimeManager() {
+    if (null == segmentLifetimeManager) {
+      segmentLifetimeManager = new SegmentLifetimeManager(pages.values());
+    }
+    return segmentLifetimeManager;
+  }
+
   /**
    * Retrieves the amount of pages in this JBIG2 document. If the pages are striped, the document
    * will be completely parsed and the amount of pages will be gathered.
@@ -155,7 +171,7 @@ class JBIG2Document {
    * @return The amount of pages in this JBIG2 document.
    * @throws IOException
    */
-  protected int getAmountOfPages() throws IOException {
+  protected synchronized int getAmountOfPages() throws IOException {
     if (amountOfPagesUnknown || amountOfPages == 0) {
       if (pages.size() == 0) {
         mapStream();
@@ -17,8 +17,13 @@
 
 package org.apache.pdfbox.jbig2;
 
+import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.pdfbox.jbig2.util.ContentHash;
 
 import org.apache.pdfbox.jbig2.util.log.Logger;
 import org.apache.pdfbox.jbig2.util.log.LoggerFactory;
@@ -42,7 +47,10 @@ public class JBIG2Globals {
    */
   private Map<Integer, SegmentHeader> globalSegments = new HashMap<Integer, SegmentHeader>();
 
-  protected SegmentHeader getSegment(int segmentNr) {
+  /** The hash of all global segments, computed on demand. */
+  private ContentHash contentHash;
+
+  protected synchronized SegmentHeader getSegment(int segmentNr) {
     if (globalSegments.size() == 0) {
       if (log.isErrorEnabled()) {
         log.error("No global segment added so far. Use JBIG2ImageReader.setGlobals().");
@@ -52,8 +60,28 @@ public class JBIG2Globals {
     return globalSegments.get(segmentNr);
   }
 
-  protected void addSegment(Integer segmentNumber, SegmentHeader segment) {
+  protected synchronized void addSegment(Integer segmentNumber, SegmentHeader segment) {
     globalSegments.put(segmentNumber, segment);
+    segment.setGlobals(this);
+    contentHash = null;
+  }
+
+  /**
+   * Returns a hash of all global segments. Globals with identical segments have equal hashes, even
+   * if they stem from different streams.
+   * 
+   * @return The {@link ContentHash} of the global segments.
+   * @throws IOException if the segments' data could not be read.
+   */
+  protected synchronized ContentHash getContentHash() throws IOException {
+    if (contentHash == null) {
+      final MessageDigest digest = ContentHash.newMessageDigest();
+      for (SegmentHeader s : new TreeMap<Integer, SegmentHeader>(globalSegments).values()) {
+        s.updateDigest(digest);
+      }
+      contentHash = new ContentHash(digest.digest());
+    }
+    return contentHash;
   }
 
 }
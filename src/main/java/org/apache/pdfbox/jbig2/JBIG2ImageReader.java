@@ -20,7 +20,10 @@ package org.apache.pdfbox.jbig2;
 import java.awt.Dimension;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -36,11 +39,28 @@ import javax.imageio.stream.ImageInputStream;
 import org.apache.pdfbox.jbig2.err.JBIG2Exception;
 import org.apache.pdfbox.jbig2.image.Bitmaps;
 import org.apache.pdfbox.jbig2.image.FilterType;
+import org.apache.pdfbox.jbig2.io.MappedImageInputStream;
+import org.apache.pdfbox.jbig2.util.cache.Cache;
 import org.apache.pdfbox.jbig2.util.cache.CacheFactory;
+import org.apache.pdfbox.jbig2.util.cache.InstrumentedCache;
+import org.apache.pdfbox.jbig2.util.cache.LRUCache;
+import org.apache.pdfbox.jbig2.util.cache.TileCache;
 import org.apache.pdfbox.jbig2.util.log.Logger;
 import org.apache.pdfbox.jbig2.util.log.LoggerFactory;
 
 /**
+ * Once the input (and the globals, if any) have been set, {@link #read(int, ImageReadParam)} and
+ * {@link #readRaster(int, ImageReadParam)} may be called concurrently from several threads. Each
+ * page is decoded with its own stream position and decoder state, while segments shared by several
+ * pages (e.g. global symbol dictionaries) are decoded only once.
+ * <p>
+ * Pages are advertised as tiled with a grid of {@value #TILE_SIZE} pixel tiles. The tiles are
+ * served by {@link #readTile(int, int, int)} and {@link #readTileRaster(int, int, int)} from the
+ * cached page bitmap and are kept in the {@link TileCache}.
+ * <p>
+ * The input is an {@link ImageInputStream} or a {@link File}. A file is read through a
+ * {@link MappedImageInputStream}, i.e. memory-mapped.
+ * 
  * @see ImageReader
  */
 public class JBIG2ImageReader extends ImageReader {
@@ -49,6 +69,9 @@ public class JBIG2ImageReader extends ImageReader {
   public static final boolean DEBUG = false;
   public static final boolean PERFORMANCE_TEST = false;
 
+  /** The width and height of the tiles served by {@link #readTile(int, int, int)}. */
+  public static final int TILE_SIZE = TiledBitmap.DEFAULT_TILE_SIZE;
+
   /** JBIG2 document to which we delegate current work. */
   private JBIG2Document document;
 
@@ -155,6 +178,12 @@ public class JBIG2ImageReader extends ImageReader {
   public Iterator<ImageTypeSpecifier> getImageTypes(int imageIndex) throws IOException {
     List<ImageTypeSpecifier> l = new ArrayList<ImageTypeSpecifier>();
 
+    // Unscaled pages are returned as 1-bit packed images, scaled pages as 8-bit gray images
+    final byte[] binaryPalette = new byte[]{
+        (byte) 0xff, 0x00
+    };
+    l.add(ImageTypeSpecifier.createIndexed(binaryPalette, binaryPalette, binaryPalette, null, 1,
+        DataBuffer.TYPE_BYTE));
     l.add(ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_BYTE_INDEXED));
 
     return l.iterator();
@@ -202,6 +231,9 @@ public class JBIG2ImageReader extends ImageReader {
 
   /**
    * Returns the decoded image of specified page considering the given {@link JBIG2ReadParam}s.
+   * <p>
+   * If no scaling is requested, the result is a {@link BufferedImage#TYPE_BYTE_BINARY} image. It
+   * has its own copy of the pixels, so drawing on it doesn't affect the cached page bitmap.
    * 
    * @see ImageReader#read(int, ImageReadParam)
    */
@@ -212,19 +244,7 @@ public class JBIG2ImageReader extends ImageReader {
       param = (JBIG2ReadParam) getDefaultReadParam(imageIndex);
     }
 
-    JBIG2Page page = getPage(imageIndex);
-
-    Bitmap pageBitmap = (Bitmap) CacheFactory.getCache().get(page);
-
-    if (pageBitmap == null) {
-      try {
-        pageBitmap = page.getBitmap();
-        CacheFactory.getCache().put(page, pageBitmap, pageBitmap.getMemorySize());
-        page.clearPageData();
-      } catch (JBIG2Exception e) {
-        throw new IOException(e.getMessage());
-      }
-    }
+    final Bitmap pageBitmap = getPageBitmap(getPage(imageIndex));
 
     return Bitmaps.asBufferedImage(pageBitmap, param, FilterType.Gaussian);
   }
@@ -240,20 +260,190 @@ public class JBIG2ImageReader extends ImageReader {
       param = (JBIG2ReadParam) getDefaultReadParam(imageIndex);
     }
 
-    JBIG2Page page = getPage(imageIndex);
+    final Bitmap pageBitmap = getPageBitmap(getPage(imageIndex));
+
+    return Bitmaps.asRaster(pageBitmap, param, FilterType.Gaussian);
+  }
+
+  /**
+   * Pages are always tiled, see {@link #getTileWidth(int)} and {@link #getTileHeight(int)}.
+   * 
+   * @see ImageReader#isImageTiled(int)
+   */
+  @Override
+  public boolean isImageTiled(int imageIndex) throws IOException {
+    getPage(imageIndex);
+    return true;
+  }
+
+  /**
+   * Returns the width of the tiles, which is {@value #TILE_SIZE} or the page width if it is less.
+   * 
+   * @see ImageReader#getTileWidth(int)
+   */
+  @Override
+  public int getTileWidth(int imageIndex) throws IOException {
+    return Math.min(TILE_SIZE, getWidth(imageIndex));
+  }
+
+  /**
+   * Returns the height of the tiles, which is {@value #TILE_SIZE} or the page height if it is less.
+   * 
+   * @see ImageReader#getTileHeight(int)
+   */
+  @Override
+  public int getTileHeight(int imageIndex) throws IOException {
+    return Math.min(TILE_SIZE, getHeight(imageIndex));
+  }
+
+  /**
+   * Returns the given tile of the page as {@link BufferedImage#TYPE_BYTE_BINARY} image. Tiles at
+   * the right and bottom edge are cut to the page size. The image has its own copy of the pixels,
+   * so it can be modified without affecting the decoded page.
+   * 
+   * @see ImageReader#readTile(int, int, int)
+   */
+  @Override
+  public BufferedImage readTile(int imageIndex, int tileX, int tileY) throws IOException {
+    final Bitmap tile = getTileBitmap(getPage(imageIndex), tileX, tileY);
+
+    // The tile may be part of the cached page or even stand for all its untouched tiles
+    return Bitmaps.asPackedImage(Bitmaps.extract(tile.getBounds(), tile));
+  }
+
+  /**
+   * Returns the given tile of the page as 8-bit raster, like an unscaled
+   * {@link #readRaster(int, ImageReadParam)} of the tile's area does. The raster is cached, every
+   * call returns a copy of it that can be modified freely.
+   * 
+   * @see ImageReader#readTileRaster(int, int, int)
+   */
+  @Override
+  public Raster readTileRaster(int imageIndex, int tileX, int tileY) throws IOException {
+    final JBIG2Page page = getPage(imageIndex);
+    final Cache cache = TileCache.getCache();
+    if (cache == null) {
+      return Bitmaps.asRaster(getTileBitmap(page, tileX, tileY));
+    }
+
+    final Object key = new TileKey(getPageKey(page, cache), tileX, tileY, true);
+    Raster raster = (Raster) cache.get(key);
+    if (raster == null) {
+      final WritableRaster created = Bitmaps.asRaster(getTileBitmap(page, tileX, tileY));
+      cache.put(key, created, created.getWidth() * created.getHeight());
+      raster = created;
+    }
+
+    // The cached raster is shared by all readers
+    final WritableRaster copy = raster.createCompatibleWritableRaster();
+    copy.setRect(raster);
+    return copy;
+  }
+
+  /**
+   * Returns the bitmap of the given tile, which must be treated as read-only. Tiles of a
+   * {@link TiledBitmap} page are shared if they lie entirely within the page, all others are
+   * extracted from the page bitmap and cached.
+   */
+  private Bitmap getTileBitmap(JBIG2Page page, int tileX, int tileY) throws IOException {
+    if (tileX < 0 || tileY < 0)
+      throw new IllegalArgumentException("Tile indices must not be negative");
+
+    // Checked before the page is decoded
+    final Rectangle pageBounds;
+    try {
+      pageBounds = new Rectangle(page.getWidth(), page.getHeight());
+    } catch (JBIG2Exception e) {
+      throw new IOException(e.getMessage());
+    }
 
-    Bitmap pageBitmap = (Bitmap) CacheFactory.getCache().get(page);
-    if (pageBitmap == null) {
-      try {
-        pageBitmap = page.getBitmap();
-        CacheFactory.getCache().put(page, pageBitmap, pageBitmap.getMemorySize());
-        page.clearPageData();
-      } catch (JBIG2Exception e) {
-        throw new IOException(e.getMessage());
+    final Rectangle tile = new Rectangle(tileX * TILE_SIZE, tileY * TILE_SIZE, TILE_SIZE, TILE_SIZE)
+        .intersection(pageBounds);
+    if (tile.isEmpty())
+      throw new IllegalArgumentException("Tile " + tileX + "/" + tileY + " is outside of the page");
+
+    final Bitmap pageBitmap = getPageBitmap(page);
+
+    if (tile.equals(pageBitmap.getBounds())) {
+      return pageBitmap;
+    }
+
+    if (pageBitmap instanceof TiledBitmap && tile.width == TILE_SIZE && tile.height == TILE_SIZE) {
+      final TiledBitmap tiled = (TiledBitmap) pageBitmap;
+      if (tiled.getTileWidth() == TILE_SIZE && tiled.getTileHeight() == TILE_SIZE) {
+        // null if the tiles have been discarded in favour of the packed pixels
+        final Bitmap tileBitmap = tiled.getTileIfTiled(tileX, tileY);
+        if (tileBitmap != null) {
+          return tileBitmap;
+        }
       }
     }
 
-    return Bitmaps.asRaster(pageBitmap, param, FilterType.Gaussian);
+    final Cache cache = TileCache.getCache();
+    if (cache == null) {
+      return Bitmaps.extract(tile, pageBitmap);
+    }
+
+    final Object key = new TileKey(getPageKey(page, cache), tileX, tileY, false);
+    Bitmap tileBitmap = (Bitmap) cache.get(key);
+    if (tileBitmap == null) {
+      tileBitmap = Bitmaps.extract(tile, pageBitmap);
+      cache.put(key, tileBitmap, tileBitmap.getMemorySize());
+    }
+
+    return tileBitmap;
+  }
+
+  /**
+   * Returns the decoded bitmap of the given page, either from the cache or by decoding it. Requests
+   * for the same page are serialized, so that a page is decoded only once even if it is requested
+   * concurrently. The bitmap is cached under the key of {@link #getPageKey(JBIG2Page, Cache)}.
+   * <p>
+   * The bitmap is cached with its memory size and must not change it afterwards. It is therefore
+   * only read in ways that keep the tiles of a {@link TiledBitmap} and the runs of a
+   * {@link RunLengthBitmap} (see {@link Bitmaps}), never through {@link Bitmap#getByteArray()}.
+   * 
+   * @param page - The page to be decoded.
+   * @return The decoded page bitmap.
+   * @throws IOException if an error occurs while decoding the page.
+   */
+  private Bitmap getPageBitmap(JBIG2Page page) throws IOException {
+    synchronized (page) {
+      final Cache cache = CacheFactory.getCache();
+      final Object key = getPageKey(page, cache);
+      Bitmap pageBitmap = (Bitmap) cache.get(key);
+
+      if (pageBitmap == null) {
+        try {
+          final long timestamp = System.nanoTime();
+          pageBitmap = page.getBitmap();
+          cache.put(key, pageBitmap, pageBitmap.getMemorySize());
+          page.clearPageData();
+
+          if (cache instanceof InstrumentedCache) {
+            ((InstrumentedCache) cache).recordLoadTime(System.nanoTime() - timestamp);
+          }
+        } catch (JBIG2Exception e) {
+          throw new IOException(e.getMessage());
+        }
+      }
+
+      return pageBitmap;
+    }
+  }
+
+  /**
+   * Returns the key the given page's bitmaps are cached under. An instrumented cache with a budget,
+   * like the default one, is shared by the readers, so the key is the page's
+   * {@link JBIG2Page#getContentHash() content hash} and any reader decoding identical data finds
+   * the bitmap. The hash is a pass over all data of the page, which is skipped for other caches:
+   * they cache the bitmap under the page itself, i.e. for the document it was read from.
+   */
+  static Object getPageKey(JBIG2Page page, Cache cache) throws IOException {
+    if (!(cache instanceof InstrumentedCache) || cache instanceof LRUCache && ((LRUCache) cache).getMaxSize() == 0) {
+      return page;
+    }
+    return page.getContentHash();
   }
 
   /**
@@ -276,7 +466,7 @@ public class JBIG2ImageReader extends ImageReader {
    * @param globals - The globals to set.
    * @throws IOException
    */
-  public void setGlobals(JBIG2Globals globals) throws IOException {
+  public synchronized void setGlobals(JBIG2Globals globals) throws IOException {
     this.globals = globals;
     this.document = null;
   }
@@ -285,12 +475,12 @@ public class JBIG2ImageReader extends ImageReader {
    * @see ImageReader#setInput(Object, boolean, boolean)
    */
   @Override
-  public void setInput(Object input, boolean seekForwardOnly, boolean ignoreMetadata) {
+  public synchronized void setInput(Object input, boolean seekForwardOnly, boolean ignoreMetadata) {
     super.setInput(input, seekForwardOnly, ignoreMetadata);
     document = null;
   }
 
-  private JBIG2Document getDocument() throws IOException {
+  private synchronized JBIG2Document getDocument() throws IOException {
     if (this.document == null) {
       if (this.input == null) {
         throw new IOException("Input not set.");
@@ -300,7 +490,9 @@ public class JBIG2ImageReader extends ImageReader {
         log.debug("Globals not set.");
       }
 
-      this.document = new JBIG2Document((ImageInputStream) this.input, this.globals);
+      final ImageInputStream stream = this.input instanceof File ? new MappedImageInputStream((File) this.input)
+          : (ImageInputStream) this.input;
+      this.document = new JBIG2Document(stream, this.globals);
     }
     return this.document;
   }
@@ -313,4 +505,34 @@ public class JBIG2ImageReader extends ImageReader {
 
     return page;
   }
+
+  /** Identifies a tile of a page in the {@link TileCache}, either as bitmap or as raster. */
+  private static final class TileKey {
+    private final Object pageKey;
+    private final int tileX;
+    private final int tileY;
+    private final boolean isRaster;
+
+    TileKey(Object pageKey, int tileX, int tileY, boolean isRaster) {
+      this.pageKey = pageKey;
+      this.tileX = tileX;
+      this.tileY = tileY;
+      this.isRaster = isRaster;
+    }
+
+    @Override
+    public int hashCode() {
+      return ((pageKey.hashCode() * 31 + tileX) * 31 + tileY) * 2 + (isRaster ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof TileKey)) {
+        return false;
+      }
+      final TileKey other = (TileKey) obj;
+      return pageKey.equals(other.pageKey) && tileX == other.tileX && tileY == other.tileY
+          && isRaster == other.isRaster;
+    }
+  }
 }
@@ -17,11 +17,13 @@
 
 package org.apache.pdfbox.jbig2;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Locale;
 
 import javax.imageio.ImageReader;
 import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.FileImageInputStream;
 import javax.imageio.stream.ImageInputStream;
 
 /**
@@ -43,7 +45,7 @@ public class JBIG2ImageReaderSpi extends ImageReaderSpi {
   private static final String[] MIME_TYPES = {
       "image/x-jbig2", "image/x-jb2"
   };
-  private static final Class<?>[] INPUT_TYPES = { ImageInputStream.class };
+  private static final Class<?>[] INPUT_TYPES = { ImageInputStream.class, File.class };
 
   /**
    * According to D.4.1:
@@ -92,6 +94,15 @@ public class JBIG2ImageReaderSpi extends ImageReaderSpi {
     if (source == null)
       throw new IllegalArgumentException("source must not be null");
 
+    if (source instanceof File) {
+      final ImageInputStream iis = new FileImageInputStream((File) source);
+      try {
+        return canDecodeInput(iis);
+      } finally {
+        iis.close();
+      }
+    }
+
     if (!(source instanceof ImageInputStream)) {
       System.out.println("source is not an ImageInputStream");
       return false;
@@ -18,8 +18,10 @@
 package org.apache.pdfbox.jbig2;
 
 import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -32,11 +34,16 @@ import org.apache.pdfbox.jbig2.segments.EndOfStripe;
 import org.apache.pdfbox.jbig2.segments.PageInformation;
 import org.apache.pdfbox.jbig2.segments.RegionSegmentInformation;
 import org.apache.pdfbox.jbig2.util.CombinationOperator;
+import org.apache.pdfbox.jbig2.util.ContentHash;
 import org.apache.pdfbox.jbig2.util.log.Logger;
 import org.apache.pdfbox.jbig2.util.log.LoggerFactory;
 
 /**
  * This class represents a JBIG2 page.
+ * <p>
+ * Methods that decode or release the page bitmap are synchronized on the page, so that different
+ * pages of a document may be decoded concurrently while requests for the same page are
+ * serialized.
  */
 class JBIG2Page {
 
@@ -60,6 +67,9 @@ class JBIG2Page {
 
   private final JBIG2Document document;
 
+  /** The hash of the page's segments and the globals, computed on demand. */
+  private ContentHash contentHash;
+
   protected JBIG2Page(JBIG2Document document, int pageNumber) {
     this.document = document;
     this.pageNumber = pageNumber;
@@ -111,7 +121,7 @@ class JBIG2Page {
    * @throws JBIG2Exception
    * @throws IOException
    */
-  protected Bitmap getBitmap() throws JBIG2Exception, IOException {
+  protected synchronized Bitmap getBitmap() throws JBIG2Exception, IOException {
     long timestamp;
 
     if (JBIG2ImageReader.PERFORMANCE_TEST) {
@@ -140,7 +150,11 @@ class JBIG2Page {
       // Page 79, 1) Decoding the page information segment
       PageInformation pageInformation = (PageInformation) getPageInformationSegment().getSegmentData();
       createPage(pageInformation);
-      clearSegmentData();
+      if (null != document) {
+        document.getSegmentLifetimeManager().pageComposed(this);
+      } else {
+        clearSegmentData();
+      }
     }
   }
 
@@ -157,13 +171,10 @@ class JBIG2Page {
   private void createNormalPage(PageInformation pageInformation) throws IOException, IntegerMaxValueException,
       InvalidHeaderValueException {
 
-    pageBitmap = new Bitmap(pageInformation.getWidth(), pageInformation.getHeight());
-
     // Page 79, 3)
     // If default pixel value is not 0, byte will be filled with 0xff
-    if (pageInformation.getDefaultPixelValue() != 0) {
-      Arrays.fill(pageBitmap.getByteArray(), (byte) 0xff);
-    }
+    pageBitmap = createPageBitmap(pageInformation.getWidth(), pageInformation.getHeight(),
+        pageInformation.getDefaultPixelValue());
 
     for (SegmentHeader s : segments.values()) {
       // Page 79, 5)
@@ -194,6 +205,28 @@ class JBIG2Page {
     }
   }
 
+  /**
+   * Creates the bitmap the regions are blitted into. Large pages are tiled (see
+   * {@link TiledBitmap#isTilingRecommended(int, int)}), so that the parts no region touches aren't
+   * allocated.
+   * 
+   * @param width - The width of the page.
+   * @param height - The height of the page.
+   * @param defaultPixelValue - The initial value of all pixels.
+   * @return The page bitmap.
+   */
+  private static Bitmap createPageBitmap(int width, int height, int defaultPixelValue) {
+    if (TiledBitmap.isTilingRecommended(width, height)) {
+      return new TiledBitmap(width, height, defaultPixelValue);
+    }
+
+    final Bitmap bitmap = new Bitmap(width, height);
+    if (defaultPixelValue != 0) {
+      Arrays.fill(bitmap.getByteArray(), (byte) 0xff);
+    }
+    return bitmap;
+  }
+
   /**
    * Check if we have only one region that forms the complete page. If the dimension equals the
    * page's dimension set the region's bitmap as the page's bitmap. Otherwise we have to blit the
@@ -213,7 +246,7 @@ class JBIG2Page {
       InvalidHeaderValueException {
     final ArrayList<SegmentData> pageStripes = collectPageStripes();
 
-    pageBitmap = new Bitmap(pageInformation.getWidth(), finalHeight);
+    pageBitmap = createPageBitmap(pageInformation.getWidth(), finalHeight, 0);
 
     int startLine = 0;
     for (SegmentData sd : pageStripes) {
@@ -307,6 +340,59 @@ class JBIG2Page {
     segments.put(segment.getSegmentNr(), segment);
   }
 
+  /**
+   * Returns all segments the page bitmap is composed of, i.e. the page's segments and all segments
+   * they refer to directly or indirectly, including global segments.
+   * 
+   * @return The set of required segments.
+   */
+  protected Set<SegmentHeader> getRequiredSegments() {
+    final Set<SegmentHeader> required = new LinkedHashSet<SegmentHeader>();
+    for (SegmentHeader s : segments.values()) {
+      addRequiredSegment(required, s);
+    }
+    return required;
+  }
+
+  private void addRequiredSegment(Set<SegmentHeader> required, SegmentHeader segment) {
+    if (null == segment || !required.add(segment)) {
+      return;
+    }
+
+    final SegmentHeader[] rtSegments = segment.getRtSegments();
+    if (null != rtSegments) {
+      for (SegmentHeader s : rtSegments) {
+        addRequiredSegment(required, s);
+      }
+    }
+  }
+
+  /**
+   * Returns a hash of everything the page bitmap is decoded from, i.e. the page's segments and the
+   * global segments. Pages of different documents or readers that are built from identical data
+   * have equal hashes, so the hash can be used as a key to cache the decoded page. It is computed
+   * once per page, as it reads all the data.
+   * 
+   * @return The {@link ContentHash} of the page.
+   * @throws IOException if the segments' data could not be read.
+   */
+  protected synchronized ContentHash getContentHash() throws IOException {
+    if (contentHash == null) {
+      final MessageDigest digest = ContentHash.newMessageDigest();
+
+      for (SegmentHeader s : segments.values()) {
+        s.updateDigest(digest);
+      }
+
+      if (null != document && null != document.getGlobalSegments()) {
+        digest.update(document.getGlobalSegments().getContentHash().getHash());
+      }
+
+      contentHash = new ContentHash(digest.digest());
+    }
+    return contentHash;
+  }
+
   /**
    * Resets the memory-critical segments to force on-demand-decoding and to avoid holding the
    * segments' bitmap too long.
@@ -322,7 +408,7 @@ class JBIG2Page {
   /**
    * Reset memory-critical parts of page.
    */
-  protected void clearPageData() {
+  protected synchronized void clearPageData() {
     pageBitmap = null;
   }
 
@@ -333,7 +419,7 @@ class JBIG2Page {
    * @throws IOException
    * @throws JBIG2Exception
    */
-  protected int getHeight() throws IOException, JBIG2Exception {
+  protected synchronized int getHeight() throws IOException, JBIG2Exception {
     if (finalHeight == 0) {
       PageInformation pi = (PageInformation) getPageInformationSegment().getSegmentData();
       if (pi.getHeight() == 0xffffffff) {
@@ -345,6 +431,10 @@ class JBIG2Page {
     return finalHeight;
   }
 
+  protected int getPageNumber() {
+    return pageNumber;
+  }
+
   protected int getWidth() {
     if (finalWidth == 0) {
       PageInformation pi = (PageInformation) getPageInformationSegment().getSegmentData();
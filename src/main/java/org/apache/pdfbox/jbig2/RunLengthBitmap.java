@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import org.apache.pdfbox.jbig2.image.Bitmaps;
+
+/**
+ * A {@link Bitmap} that stores the black runs of each line instead of packed pixels, e.g. the
+ * result of decoding an MMR coded region. Large, mostly white bitmaps like scanned drawings take
+ * only a fraction of the memory of their packed form this way, and blitting, extracting, scaling
+ * and finding blank areas can work on the runs directly (see {@link Bitmaps}).
+ * <p>
+ * The packed pixels are created when they are accessed for the first time. Reading single bytes
+ * or pixels keeps the runs, while {@link #getByteArray()} and the modifying methods discard them,
+ * as the runs wouldn't reflect later changes of the pixels anymore. Both change the
+ * {@link #getMemorySize() memory size}, so a cached bitmap must be copied before it is accessed
+ * bytewise.
+ */
+public class RunLengthBitmap extends Bitmap {
+
+  /** The runs of a line without black pixels. */
+  private static final int[] NO_RUNS = new int[0];
+
+  /**
+   * For each line, the black runs as pairs of start (inclusive) and end (exclusive) x coordinate,
+   * ordered from left to right. {@code null} as soon as the runs have been discarded.
+   */
+  private volatile int[][] runs;
+
+  /** The memory taken by the runs in bytes. */
+  private long runMemorySize;
+
+  /** The packed pixels, {@code null} until first accessed. */
+  private volatile byte[] data;
+
+  /**
+   * Creates a white bitmap of the given size.
+   *
+   * @param width - The width of the bitmap in pixels.
+   * @param height - The height of the bitmap in pixels.
+   */
+  public RunLengthBitmap(int width, int height) {
+    super(width, height, null);
+
+    runs = new int[height][];
+    for (int y = 0; y < height; y++) {
+      runs[y] = NO_RUNS;
+    }
+    runMemorySize = 16 + 4L * height;
+  }
+
+  /**
+   * Sets the runs of a line from its changing elements, i.e. the x coordinates where the colour
+   * changes, beginning with the end of the first white run (see ITU-T T.6, 2.2.2). Elements beyond
+   * the width are clipped, elements that don't advance are ignored.
+   *
+   * @param y - The line.
+   * @param changingElements - The changing elements of the line.
+   * @param count - The number of changing elements.
+   *
+   * @throws IllegalStateException if the pixels have been accessed already.
+   */
+  public void setLine(int y, int[] changingElements, int count) {
+    final int[][] r = runs;
+    if (r == null || data != null)
+      throw new IllegalStateException("The pixels have been accessed already");
+
+    final int width = getWidth();
+
+    final int[] line = new int[count + 1];
+    int n = 0;
+    for (int index = 0, x = 0; index < count; index++) {
+      final int offset = Math.min(changingElements[index], width);
+      if (offset > x) {
+        if ((index & 1) != 0) {
+          if (n > 0 && line[n - 1] == x) {
+            line[n - 1] = offset;
+          } else {
+            line[n++] = x;
+            line[n++] = offset;
+          }
+        }
+        x = offset;
+      }
+    }
+
+    final int[] trimmed = n == 0 ? NO_RUNS : Arrays.copyOf(line, n);
+    runMemorySize += memorySize(trimmed) - memorySize(r[y]);
+    r[y] = trimmed;
+  }
+
+  private static int memorySize(int[] line) {
+    return line == NO_RUNS ? 0 : 16 + 4 * line.length;
+  }
+
+  /**
+   * Returns the black runs of all lines: for each line, pairs of start (inclusive) and end
+   * (exclusive) x coordinate, ordered from left to right. The arrays must not be modified.
+   *
+   * @return The runs of all lines or {@code null} if they have been discarded because the pixels
+   *         may have been modified.
+   */
+  public int[][] getRuns() {
+    return runs;
+  }
+
+  /**
+   * Returns the memory taken by the runs in bytes.
+   *
+   * @return The size of the runs or {@code 0} if they have been discarded.
+   */
+  public long getRunMemorySize() {
+    return runs != null ? runMemorySize : 0;
+  }
+
+  private byte[] data() {
+    final byte[] d = data;
+    return d != null ? d : materialize();
+  }
+
+  private synchronized byte[] materialize() {
+    if (data == null) {
+      final byte[] d = new byte[getRowStride() * getHeight()];
+      final int[][] r = runs;
+      for (int y = 0, lineStart = 0; y < r.length; y++, lineStart += getRowStride()) {
+        final int[] line = r[y];
+        for (int i = 0; i < line.length; i += 2) {
+          Bitmaps.fillRun(d, lineStart, line[i], line[i + 1]);
+        }
+      }
+      data = d;
+    }
+    return data;
+  }
+
+  /** Returns the packed pixels for modification, after which the runs are outdated. */
+  private byte[] writableData() {
+    final byte[] d = data();
+    if (runs != null) {
+      runs = null;
+    }
+    return d;
+  }
+
+  @Override
+  public void setPixel(int x, int y, byte pixelValue) {
+    final byte[] d = writableData();
+    final int byteIndex = getByteIndex(x, y);
+    d[byteIndex] = (byte) (d[byteIndex] | (pixelValue << (7 - getBitOffset(x))));
+  }
+
+  @Override
+  public byte[] getByteArray() {
+    return writableData();
+  }
+
+  @Override
+  public byte getByte(int index) {
+    return data()[index];
+  }
+
+  @Override
+  public void setByte(int index, byte value) {
+    writableData()[index] = value;
+  }
+
+  @Override
+  public int getByteAsInteger(int index) {
+    return data()[index] & 0xff;
+  }
+
+  @Override
+  public boolean isBlank(Rectangle roi) {
+    final int[][] r = runs;
+    if (r == null) {
+      return super.isBlank(roi);
+    }
+
+    final int maxX = roi.x + roi.width;
+    for (int y = roi.y; y < roi.y + roi.height; y++) {
+      final int[] line = r[y];
+      for (int i = 0; i < line.length && line[i] < maxX; i += 2) {
+        if (line[i + 1] > roi.x) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the size of the runs plus the size of the packed pixels, which only count once they
+   * have been created by accessing the bitmap bytewise.
+   */
+  @Override
+  public int getMemorySize() {
+    final byte[] d = data;
+    return (int) Math.min(Integer.MAX_VALUE, (d != null ? d.length : 0L) + getRunMemorySize());
+  }
+}
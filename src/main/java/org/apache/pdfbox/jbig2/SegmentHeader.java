@@ -20,6 +20,7 @@ package org.apache.pdfbox.jbig2;
 import java.io.IOException;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -36,6 +37,7 @@ import org.apache.pdfbox.jbig2.segments.Profiles;
 import org.apache.pdfbox.jbig2.segments.SymbolDictionary;
 import org.apache.pdfbox.jbig2.segments.Table;
 import org.apache.pdfbox.jbig2.segments.TextRegion;
+import org.apache.pdfbox.jbig2.util.ContentHash;
 import org.apache.pdfbox.jbig2.util.log.Logger;
 import org.apache.pdfbox.jbig2.util.log.LoggerFactory;
 
@@ -108,6 +110,16 @@ public class SegmentHeader {
 
   private Reference<SegmentData> segmentData;
 
+  /**
+   * Holds the segment data strongly as long as the segment is retained, see
+   * {@link SegmentLifetimeManager}.
+   */
+  private boolean retained;
+  private SegmentData retainedSegmentData;
+
+  /** The globals this segment belongs to, if it is not associated with a page. */
+  private JBIG2Globals globals;
+
 
   public SegmentHeader(JBIG2Document document, SubInputStream sis, long offset, int organisationType)
       throws IOException {
@@ -372,12 +384,66 @@ public class SegmentHeader {
     return new SubInputStream(subInputStream, segmentDataStartOffset, segmentDataLength);
   }
 
+  /**
+   * Feeds everything that determines the decoded content of this segment into the given digest: the
+   * segment number and type, the numbers of the referred-to segments and the data part.
+   * 
+   * @param digest - The digest to be updated.
+   * @throws IOException if the data part could not be read.
+   */
+  void updateDigest(MessageDigest digest) throws IOException {
+    ContentHash.update(digest, segmentNr);
+    ContentHash.update(digest, segmentType);
+
+    if (rtSegments != null) {
+      for (SegmentHeader s : rtSegments) {
+        ContentHash.update(digest, s != null ? s.segmentNr : -1);
+      }
+    }
+
+    ContentHash.update(digest, segmentDataLength);
+
+    final SubInputStream data = getDataInputStream();
+    final byte[] buffer = new byte[4096];
+    int read;
+    while ((read = data.read(buffer, 0, buffer.length)) > 0) {
+      digest.update(buffer, 0, read);
+    }
+  }
+
+  void setGlobals(JBIG2Globals globals) {
+    this.globals = globals;
+  }
+
+  /**
+   * Returns a hash which identifies the decoded content of this segment independently of the
+   * document and reader it is read from. This is only available for global segments, because their
+   * content is determined by the globals alone.
+   * 
+   * @return The {@link ContentHash} of this global segment or {@code null} if the segment is not a
+   *         global one.
+   * @throws IOException if the segments' data could not be read.
+   */
+  public ContentHash getGlobalContentHash() throws IOException {
+    if (null == globals) {
+      return null;
+    }
+
+    final MessageDigest digest = ContentHash.newMessageDigest();
+    digest.update(globals.getContentHash().getHash());
+    ContentHash.update(digest, segmentNr);
+    return new ContentHash(digest.digest());
+  }
+
   /**
    * Retrieves the segments' data part.
+   * <p>
+   * The method is synchronized so that a segment which is referred to by several pages (e.g. a
+   * global symbol dictionary) is parsed only once if those pages are decoded concurrently.
    * 
    * @return Retrieved {@link SegmentData} instance.
    */
-  public SegmentData getSegmentData() {
+  public synchronized SegmentData getSegmentData() {
     SegmentData segmentDataPart = null;
 
     if (null != segmentData) {
@@ -397,6 +463,9 @@ public class SegmentHeader {
         segmentDataPart.init(this, getDataInputStream());
 
         segmentData = new SoftReference<SegmentData>(segmentDataPart);
+        if (retained) {
+          retainedSegmentData = segmentDataPart;
+        }
 
       } catch (Exception e) {
         throw new RuntimeException("Can't instantiate segment class", e);
@@ -406,10 +475,26 @@ public class SegmentHeader {
     return segmentDataPart;
   }
 
-  public void cleanSegmentData() {
+  public synchronized void cleanSegmentData() {
     if (segmentData != null) {
       segmentData = null;
     }
+    retainedSegmentData = null;
+  }
+
+  /**
+   * Defines whether the decoded segment data is kept in memory. A retained segment holds its data
+   * strongly, otherwise the data is only softly reachable and may be decoded again on demand.
+   * 
+   * @param retained - {@code true} if the segment data shall be retained.
+   */
+  synchronized void setRetained(boolean retained) {
+    this.retained = retained;
+    retainedSegmentData = retained && segmentData != null ? segmentData.get() : null;
+  }
+
+  synchronized boolean isRetained() {
+    return retained;
   }
 
   public String toString() {
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class decides how long the decoded data of a segment is kept in memory.
+ * <p>
+ * The decision is based on the referred-to segments of all pages of a document. A segment that is
+ * needed by a page which has not been composed yet (typically a global symbol dictionary that is
+ * shared by several pages) is retained after the current page has been composed, so that it won't
+ * be decoded again for the next page. As soon as the last page that needs a segment has been
+ * composed, the segment is released: page segments drop their data, global segments fall back to
+ * being held softly, as they may be shared with other documents.
+ * <p>
+ * Pages may be composed in any order and more than once. A page that is composed again after the
+ * segments it needs have been released simply decodes them on demand.
+ */
+class SegmentLifetimeManager {
+
+  /** For each segment, the numbers of the pages that need it and have not been composed yet. */
+  private final Map<SegmentHeader, Set<Integer>> pendingPages = new HashMap<SegmentHeader, Set<Integer>>();
+
+  SegmentLifetimeManager(Collection<JBIG2Page> pages) {
+    for (JBIG2Page page : pages) {
+      final Integer pageNumber = page.getPageNumber();
+      for (SegmentHeader s : page.getRequiredSegments()) {
+        Set<Integer> pageNumbers = pendingPages.get(s);
+        if (pageNumbers == null) {
+          pageNumbers = new HashSet<Integer>();
+          pendingPages.put(s, pageNumbers);
+        }
+        pageNumbers.add(pageNumber);
+      }
+    }
+  }
+
+  /**
+   * Has to be called after the bitmap of the given page has been composed. The segments the page
+   * needed are retained if a pending page needs them as well and released otherwise.
+   *
+   * @param page - The page that has been composed.
+   */
+  synchronized void pageComposed(JBIG2Page page) {
+    final Integer pageNumber = page.getPageNumber();
+
+    for (SegmentHeader s : page.getRequiredSegments()) {
+      final Set<Integer> pageNumbers = pendingPages.get(s);
+      if (pageNumbers != null) {
+        pageNumbers.remove(pageNumber);
+      }
+
+      if (pageNumbers != null && !pageNumbers.isEmpty()) {
+        s.setRetained(true);
+      } else {
+        release(s);
+      }
+    }
+  }
+
+  private void release(SegmentHeader s) {
+    s.setRetained(false);
+    if (s.getPageAssociation() != 0) {
+      s.cleanSegmentData();
+    }
+  }
+
+}
@@ -0,0 +1,262 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2;
+
+import java.awt.Rectangle;
+
+/**
+ * A {@link Bitmap} that refers to a region of a parent bitmap by its bit offset, e.g. a symbol of
+ * a collective bitmap of a height class or a pattern of a pattern dictionary, or to packed pixels
+ * stored in a larger array, e.g. a symbol of a symbol dictionary's arena.
+ * <p>
+ * The pixels are read from the parent's bytes in place. Every byte is composed of the parent's
+ * bytes on access, with the same content and the same cleared padding bits a copy made by
+ * {@link org.apache.pdfbox.jbig2.image.Bitmaps#extract(Rectangle, Bitmap)} would have. Blitting
+ * and refinement read the view directly, see {@link #getBytes(int, byte[], int, int)}.
+ * <p>
+ * Only {@link #getByteArray()} and the modifying methods copy the region into an array of its own.
+ * Afterwards the sub bitmap behaves like any other bitmap. The parent must not be modified as long
+ * as the sub bitmap may still be accessed.
+ */
+public class SubBitmap extends Bitmap {
+
+  /** The pixels of the parent bitmap. */
+  private final byte[] parentData;
+
+  /** The index of the parent's first byte in {@link #parentData}. */
+  private final int parentOffset;
+
+  /** The row stride of the parent bitmap. */
+  private final int parentRowStride;
+
+  /** The x coordinate of the region within the parent, i.e. its bit offset in a parent's line. */
+  private final int x;
+
+  /** The first line of the region within the parent. */
+  private final int y;
+
+  /** The mask of the pixels in the last byte of a line, excluding the padding bits. */
+  private final int lastByteMask;
+
+  /** The copied pixels of the region, {@code null} as long as they are read from the parent. */
+  private volatile byte[] data;
+
+  SubBitmap(Bitmap parent, Rectangle roi) {
+    super(roi.width, roi.height, null);
+
+    if (roi.x < 0 || roi.y < 0 || roi.x + roi.width > parent.getWidth() || roi.y + roi.height > parent.getHeight())
+      throw new IllegalArgumentException("The region must lie within the parent bitmap");
+
+    this.parentData = parent.getByteArray();
+    this.parentOffset = 0;
+    this.parentRowStride = parent.getRowStride();
+    this.x = roi.x;
+    this.y = roi.y;
+    this.lastByteMask = (0xff << ((8 - (roi.width & 7)) & 7)) & 0xff;
+  }
+
+  /**
+   * Creates a bitmap whose packed pixels are stored in the given array, starting at {@code offset}
+   * and organized like the bytes of {@link #getByteArray()}. The bytes, including their padding
+   * bits, are read as they are.
+   * 
+   * @param data - The array holding the pixels.
+   * @param offset - The index of the first byte of the bitmap.
+   * @param width - The width of the bitmap in pixels.
+   * @param height - The height of the bitmap in pixels.
+   */
+  public SubBitmap(byte[] data, int offset, int width, int height) {
+    super(width, height, null);
+
+    if (offset < 0 || offset + getRowStride() * height > data.length)
+      throw new IllegalArgumentException("The bitmap must lie within the array");
+
+    this.parentData = data;
+    this.parentOffset = offset;
+    this.parentRowStride = getRowStride();
+    this.x = 0;
+    this.y = 0;
+    this.lastByteMask = 0xff;
+  }
+
+  /**
+   * Checks whether the pixels have been copied into an array of their own, i.e. whether they are no
+   * longer read from the parent.
+   * 
+   * @return {@code true} if {@link #getByteArray()} or a modifying method has been called.
+   */
+  public boolean isDetached() {
+    return data != null;
+  }
+
+  /**
+   * Returns the array this bitmap's bytes are stored in if they are organized like the bytes of
+   * {@link #getByteArray()}, i.e. the bitmap's byte {@code i} is the array's byte
+   * {@link #getAlignedOffset()} {@code + i}. This is the case for bitmaps created from an array and
+   * for regions that span whole lines of their parent. The array must not be modified.
+   * 
+   * @return The array holding the bytes in place or {@code null} if the bytes have to be composed.
+   */
+  public byte[] getAlignedData() {
+    return isAligned() ? parentData : null;
+  }
+
+  /**
+   * @return The index of the first byte of this bitmap in {@link #getAlignedData()}.
+   */
+  public int getAlignedOffset() {
+    return parentOffset + y * parentRowStride;
+  }
+
+  private boolean isAligned() {
+    return x == 0 && parentRowStride == getRowStride() && lastByteMask == 0xff;
+  }
+
+  /**
+   * Copies bytes of this bitmap to the given array, as if they were copied from
+   * {@link #getByteArray()} with {@link System#arraycopy(Object, int, Object, int, int)}, but
+   * without copying the whole region.
+   * 
+   * @param index - The index of the first byte, organized like the bytes of
+   *          {@link #getByteArray()}.
+   * @param dst - The array to copy to.
+   * @param dstOffset - The index of the first byte in {@code dst}.
+   * @param length - The amount of bytes to copy.
+   * 
+   * @throws IndexOutOfBoundsException if the bytes are out of bounds.
+   */
+  public void getBytes(int index, byte[] dst, int dstOffset, int length) {
+    final byte[] d = data;
+    if (d != null) {
+      System.arraycopy(d, index, dst, dstOffset, length);
+      return;
+    }
+
+    if (index < 0 || length < 0 || index + length > getRowStride() * getHeight())
+      throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+
+    if (isAligned()) {
+      System.arraycopy(parentData, getAlignedOffset() + index, dst, dstOffset, length);
+      return;
+    }
+
+    int row = index / getRowStride();
+    int column = index - row * getRowStride();
+    for (int i = 0; i < length; i++) {
+      dst[dstOffset + i] = (byte) composeByte(row, column);
+      if (++column == getRowStride()) {
+        column = 0;
+        row++;
+      }
+    }
+  }
+
+  /** Composes the given byte of a line from the (at most) two parent bytes it overlaps. */
+  private int composeByte(int row, int column) {
+    final int bit = x + (column << 3);
+    final int parentColumn = bit >> 3;
+    final int shift = bit & 7;
+    final int index = parentOffset + (y + row) * parentRowStride + parentColumn;
+
+    int value = parentData[index] & 0xff;
+    if (shift != 0) {
+      value = (value << shift) & 0xff;
+      if (parentColumn + 1 < parentRowStride) {
+        value |= (parentData[index + 1] & 0xff) >> (8 - shift);
+      }
+    }
+
+    return column == getRowStride() - 1 ? value & lastByteMask : value;
+  }
+
+  private int composeByte(int index) {
+    if (index < 0 || index >= getRowStride() * getHeight())
+      throw new IndexOutOfBoundsException("index: " + index);
+
+    if (isAligned()) {
+      return parentData[getAlignedOffset() + index] & 0xff;
+    }
+
+    final int row = index / getRowStride();
+    return composeByte(row, index - row * getRowStride());
+  }
+
+  /** Returns the pixels for modification, copying them out of the parent first if necessary. */
+  private byte[] writableData() {
+    final byte[] d = data;
+    return d != null ? d : detach();
+  }
+
+  private synchronized byte[] detach() {
+    if (data == null) {
+      final byte[] d = new byte[getRowStride() * getHeight()];
+      getBytes(0, d, 0, d.length);
+      data = d;
+    }
+    return data;
+  }
+
+  @Override
+  public byte getPixel(int x, int y) {
+    final byte[] d = data;
+    if (d != null) {
+      return super.getPixel(x, y);
+    }
+
+    final int bit = this.x + x;
+    return (byte) ((parentData[parentOffset + (this.y + y) * parentRowStride + (bit >> 3)] >> (7 - (bit & 7))) & 0x01);
+  }
+
+  @Override
+  public void setPixel(int x, int y, byte pixelValue) {
+    final byte[] d = writableData();
+    final int byteIndex = getByteIndex(x, y);
+    d[byteIndex] = (byte) (d[byteIndex] | (pixelValue << (7 - getBitOffset(x))));
+  }
+
+  @Override
+  public byte[] getByteArray() {
+    return writableData();
+  }
+
+  @Override
+  public byte getByte(int index) {
+    final byte[] d = data;
+    return d != null ? d[index] : (byte) composeByte(index);
+  }
+
+  @Override
+  public void setByte(int index, byte value) {
+    writableData()[index] = value;
+  }
+
+  @Override
+  public int getByteAsInteger(int index) {
+    final byte[] d = data;
+    return d != null ? d[index] & 0xff : composeByte(index);
+  }
+
+  /**
+   * Returns the size of the region's packed pixels, which are either shared with the parent or
+   * copied.
+   */
+  @Override
+  public int getMemorySize() {
+    return getRowStride() * getHeight();
+  }
+}
@@ -0,0 +1,453 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import org.apache.pdfbox.jbig2.image.Bitmaps;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
+
+/**
+ * A {@link Bitmap} that is divided into tiles, used for large pages. Only the tiles a region is
+ * blitted into are allocated; all others are represented by one shared tile that holds the
+ * default pixel value. A huge, mostly white page therefore takes little more memory than its
+ * content.
+ * <p>
+ * The tiles have the same size, so those at the right and bottom edge may reach beyond the bitmap.
+ * Their pixels outside the bitmap have the default value. The tile grid starts at the origin.
+ * <p>
+ * Reading single bytes or pixels keeps the tiles. {@link #getByteArray()} creates the packed pixels
+ * of the whole bitmap and discards the tiles, as the returned array may be modified. This changes
+ * the {@link #getMemorySize() memory size}, so it must not be called on a cached bitmap.
+ */
+public class TiledBitmap extends Bitmap {
+
+  /** Pages with at least this many bytes of packed pixels are tiled. */
+  public static final String MIN_SIZE_PROPERTY = "org.apache.pdfbox.jbig2.tiledPage.minSize";
+
+  public static final long DEFAULT_MIN_SIZE = 16L * 1024 * 1024;
+
+  /** The default width and height of a tile in pixels. */
+  public static final int DEFAULT_TILE_SIZE = 256;
+
+  private final int tileWidth;
+  private final int tileHeight;
+  private final int tileRowStride;
+  private final int columns;
+  private final int rows;
+
+  /** The value of a byte of an untouched tile, {@code 0} or {@code 0xff}. */
+  private final byte defaultByte;
+
+  /** The tile shared by all untouched positions. It must never be modified. */
+  private final Bitmap defaultTile;
+
+  /**
+   * The tiles row by row, {@code null} for untouched ones. The array is {@code null} as soon as the
+   * tiles have been discarded in favour of {@link #data}.
+   */
+  private volatile Bitmap[] tiles;
+
+  /** The packed pixels of the whole bitmap, {@code null} until requested. */
+  private volatile byte[] data;
+
+  /**
+   * Creates a bitmap with tiles of {@value #DEFAULT_TILE_SIZE} by {@value #DEFAULT_TILE_SIZE}
+   * pixels.
+   *
+   * @param width - The width of the bitmap in pixels.
+   * @param height - The height of the bitmap in pixels.
+   * @param defaultPixel - The initial value of all pixels, {@code 0} or {@code 1}.
+   */
+  public TiledBitmap(int width, int height, int defaultPixel) {
+    this(width, height, defaultPixel, DEFAULT_TILE_SIZE, DEFAULT_TILE_SIZE);
+  }
+
+  /**
+   * Creates a bitmap with tiles of the given size.
+   *
+   * @param width - The width of the bitmap in pixels.
+   * @param height - The height of the bitmap in pixels.
+   * @param defaultPixel - The initial value of all pixels, {@code 0} or {@code 1}.
+   * @param tileWidth - The width of a tile in pixels, a positive multiple of 8.
+   * @param tileHeight - The height of a tile in pixels.
+   */
+  public TiledBitmap(int width, int height, int defaultPixel, int tileWidth, int tileHeight) {
+    super(width, height, null);
+
+    if (tileWidth <= 0 || (tileWidth & 0x07) != 0)
+      throw new IllegalArgumentException("tileWidth must be a positive multiple of 8");
+
+    if (tileHeight <= 0)
+      throw new IllegalArgumentException("tileHeight must be positive");
+
+    this.tileWidth = tileWidth;
+    this.tileHeight = tileHeight;
+    this.tileRowStride = tileWidth >> 3;
+    this.columns = (width + tileWidth - 1) / tileWidth;
+    this.rows = (height + tileHeight - 1) / tileHeight;
+    this.defaultByte = defaultPixel != 0 ? (byte) 0xff : 0;
+
+    this.defaultTile = createTile();
+    this.tiles = new Bitmap[columns * rows];
+  }
+
+  /**
+   * Checks whether a page of the given size should be tiled, i.e. whether its packed pixels take at
+   * least as many bytes as given by the system property {@value #MIN_SIZE_PROPERTY}, which defaults
+   * to {@value #DEFAULT_MIN_SIZE}.
+   *
+   * @param width - The width of the page in pixels.
+   * @param height - The height of the page in pixels.
+   * @return {@code true} if the page should be tiled.
+   */
+  public static boolean isTilingRecommended(int width, int height) {
+    return ((width + 7L) >> 3) * height >= Long.getLong(MIN_SIZE_PROPERTY, DEFAULT_MIN_SIZE);
+  }
+
+  private Bitmap createTile() {
+    final Bitmap tile = new Bitmap(tileWidth, tileHeight);
+    if (defaultByte != 0) {
+      Arrays.fill(tile.getByteArray(), defaultByte);
+    }
+    return tile;
+  }
+
+  /**
+   * Returns the value of the pixels of untouched tiles.
+   *
+   * @return {@code 0} or {@code 1}.
+   */
+  public int getDefaultPixel() {
+    return defaultByte & 1;
+  }
+
+  public int getTileWidth() {
+    return tileWidth;
+  }
+
+  public int getTileHeight() {
+    return tileHeight;
+  }
+
+  /**
+   * Returns the number of tile columns.
+   *
+   * @return The number of tiles per row of tiles.
+   */
+  public int getColumns() {
+    return columns;
+  }
+
+  /**
+   * Returns the number of tile rows.
+   *
+   * @return The number of tiles per column of tiles.
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Checks whether the bitmap is still held as tiles, i.e. {@link #getByteArray()} hasn't been
+   * called yet.
+   *
+   * @return {@code true} if the tiles are available.
+   */
+  public boolean isTiled() {
+    return tiles != null;
+  }
+
+  /**
+   * Returns a tile. Untouched tiles are all represented by the same bitmap that contains the
+   * default pixel value only. The returned bitmap must not be modified.
+   *
+   * @param column - The column of the tile.
+   * @param row - The row of the tile.
+   * @return The tile of {@link #getTileWidth()} by {@link #getTileHeight()} pixels.
+   *
+   * @throws IllegalStateException if the tiles have been discarded.
+   */
+  public Bitmap getTile(int column, int row) {
+    final Bitmap tile = getTileIfTiled(column, row);
+    if (tile == null)
+      throw new IllegalStateException("The tiles have been discarded");
+
+    return tile;
+  }
+
+  /**
+   * Returns a tile like {@link #getTile(int, int)} does, but {@code null} instead of failing if the
+   * tiles have been discarded. Unlike {@link #isTiled()} followed by {@link #getTile(int, int)},
+   * this can't fail if the tiles are discarded concurrently.
+   *
+   * @param column - The column of the tile.
+   * @param row - The row of the tile.
+   * @return The tile or {@code null} if the tiles have been discarded.
+   */
+  public Bitmap getTileIfTiled(int column, int row) {
+    final Bitmap[] t = tiles;
+    if (t == null)
+      return null;
+
+    final Bitmap tile = t[tileIndex(column, row)];
+    return tile != null ? tile : defaultTile;
+  }
+
+  /**
+   * Checks whether a tile is untouched, i.e. contains the default pixel value only.
+   *
+   * @param column - The column of the tile.
+   * @param row - The row of the tile.
+   * @return {@code true} if the tile hasn't been allocated.
+   *
+   * @throws IllegalStateException if the tiles have been discarded.
+   */
+  public boolean isDefaultTile(int column, int row) {
+    return getTile(column, row) == defaultTile;
+  }
+
+  private int tileIndex(int column, int row) {
+    if (column < 0 || column >= columns || row < 0 || row >= rows)
+      throw new IndexOutOfBoundsException("No tile at " + column + "/" + row);
+
+    return row * columns + column;
+  }
+
+  /** Returns the tile at the given index, allocating it if it is still untouched. */
+  private Bitmap writableTile(Bitmap[] t, int index) {
+    Bitmap tile = t[index];
+    if (tile == null) {
+      tile = createTile();
+      t[index] = tile;
+    }
+    return tile;
+  }
+
+  /**
+   * Does the same as {@link Bitmaps#blit(Bitmap, Bitmap, int, int, CombinationOperator)} with this
+   * bitmap as target, but only for the tiles the source overlaps. Untouched tiles the operator
+   * wouldn't change stay unallocated.
+   *
+   * @param src - The bitmap that should be combined with this bitmap.
+   * @param x - The x coordinate where the upper left corner of {@code src} should be positioned.
+   * @param y - The y coordinate where the upper left corner of {@code src} should be positioned.
+   * @param op - The combination operator for combining two pixels.
+   */
+  public void blit(Bitmap src, int x, int y, CombinationOperator op) {
+    final Bitmap[] t = tiles;
+    if (t == null) {
+      Bitmaps.blit(src, this, x, y, op);
+      return;
+    }
+
+    final Rectangle area = new Rectangle(x, y, src.getWidth(), src.getHeight()).intersection(getBounds());
+    if (area.isEmpty()) {
+      return;
+    }
+
+    final int lastRow = (area.y + area.height - 1) / tileHeight;
+    final int lastColumn = (area.x + area.width - 1) / tileWidth;
+    for (int row = area.y / tileHeight; row <= lastRow; row++) {
+      for (int column = area.x / tileWidth; column <= lastColumn; column++) {
+        final int index = row * columns + column;
+        final Rectangle tileBounds = new Rectangle(column * tileWidth, row * tileHeight, tileWidth, tileHeight);
+        final Rectangle part = tileBounds.intersection(area);
+        final Rectangle srcPart = new Rectangle(part.x - x, part.y - y, part.width, part.height);
+
+        if (t[index] == null && keepsDefault(src, srcPart, op)) {
+          continue;
+        }
+
+        final Bitmap tile = writableTile(t, index);
+        // Extracting keeps the runs of a run-length source, so they are still blitted as runs
+        if (srcPart.equals(src.getBounds())) {
+          Bitmaps.blit(src, tile, x - tileBounds.x, y - tileBounds.y, op);
+        } else {
+          Bitmaps.blit(Bitmaps.extract(srcPart, src), tile, part.x - tileBounds.x, part.y - tileBounds.y, op);
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks whether combining the given part of {@code src} with an untouched tile leaves the tile
+   * unchanged.
+   */
+  private boolean keepsDefault(Bitmap src, Rectangle srcPart, CombinationOperator op) {
+    if (defaultByte == 0) {
+      switch (op){
+        case AND :
+          return true;
+        case OR :
+        case XOR :
+        case REPLACE :
+          return src.isBlank(srcPart);
+        default :
+          return false;
+      }
+    } else {
+      switch (op){
+        case OR :
+          return true;
+        case XOR :
+          return src.isBlank(srcPart);
+        default :
+          return false;
+      }
+    }
+  }
+
+  /** Returns the index of the given byte of the bitmap within its tile. */
+  private int indexInTile(int index) {
+    final int y = index / getRowStride();
+    final int x = index - y * getRowStride();
+    return (y % tileHeight) * tileRowStride + x % tileRowStride;
+  }
+
+  /** Returns the index of the tile that contains the given byte of the bitmap. */
+  private int tileOf(int index) {
+    if (index < 0 || index >= getRowStride() * getHeight())
+      throw new IndexOutOfBoundsException("Index: " + index);
+
+    final int y = index / getRowStride();
+    final int x = index - y * getRowStride();
+    return (y / tileHeight) * columns + x / tileRowStride;
+  }
+
+  private synchronized byte[] materialize() {
+    final Bitmap[] t = tiles;
+    if (t != null) {
+      final int rowStride = getRowStride();
+      final byte[] d = new byte[rowStride * getHeight()];
+
+      for (int row = 0; row < rows; row++) {
+        for (int column = 0; column < columns; column++) {
+          final Bitmap tile = t[row * columns + column];
+          final int startX = column * tileRowStride;
+          final int length = Math.min(tileRowStride, rowStride - startX);
+          final int startY = row * tileHeight;
+          final int endY = Math.min(startY + tileHeight, getHeight());
+
+          for (int y = startY, idx = startY * rowStride + startX; y < endY; y++, idx += rowStride) {
+            if (tile == null) {
+              Arrays.fill(d, idx, idx + length, defaultByte);
+            } else {
+              System.arraycopy(tile.getByteArray(), (y - startY) * tileRowStride, d, idx, length);
+            }
+          }
+        }
+      }
+
+      data = d;
+      tiles = null;
+    }
+    return data;
+  }
+
+  @Override
+  public void setPixel(int x, int y, byte pixelValue) {
+    final int index = getByteIndex(x, y);
+    setByte(index, (byte) (getByte(index) | (pixelValue << (7 - getBitOffset(x)))));
+  }
+
+  @Override
+  public byte[] getByteArray() {
+    return materialize();
+  }
+
+  @Override
+  public byte getByte(int index) {
+    final Bitmap[] t = tiles;
+    if (t == null) {
+      return data[index];
+    }
+
+    final Bitmap tile = t[tileOf(index)];
+    return tile != null ? tile.getByte(indexInTile(index)) : defaultByte;
+  }
+
+  @Override
+  public void setByte(int index, byte value) {
+    final Bitmap[] t = tiles;
+    if (t == null) {
+      data[index] = value;
+    } else {
+      writableTile(t, tileOf(index)).setByte(indexInTile(index), value);
+    }
+  }
+
+  @Override
+  public int getByteAsInteger(int index) {
+    return getByte(index) & 0xff;
+  }
+
+  @Override
+  public boolean isBlank(Rectangle roi) {
+    final Bitmap[] t = tiles;
+    if (t == null) {
+      return super.isBlank(roi);
+    }
+
+    if (roi.width <= 0 || roi.height <= 0) {
+      return true;
+    }
+
+    final int lastRow = (roi.y + roi.height - 1) / tileHeight;
+    final int lastColumn = (roi.x + roi.width - 1) / tileWidth;
+    for (int row = roi.y / tileHeight; row <= lastRow; row++) {
+      for (int column = roi.x / tileWidth; column <= lastColumn; column++) {
+        final Bitmap tile = t[row * columns + column];
+        if (tile == null) {
+          if (defaultByte != 0) {
+            return false;
+          }
+        } else {
+          final Rectangle part = roi.intersection(new Rectangle(column * tileWidth, row * tileHeight, tileWidth,
+              tileHeight));
+          part.translate(-column * tileWidth, -row * tileHeight);
+          if (!tile.isBlank(part)) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the size of the allocated tiles, or of the packed pixels once the tiles have been
+   * discarded.
+   */
+  @Override
+  public int getMemorySize() {
+    final Bitmap[] t = tiles;
+    if (t == null) {
+      return data.length;
+    }
+
+    long size = defaultTile.getMemorySize() + 4L * t.length;
+    for (Bitmap tile : t) {
+      if (tile != null) {
+        size += tile.getMemorySize();
+      }
+    }
+    return (int) Math.min(Integer.MAX_VALUE, size);
+  }
+}
@@ -18,15 +18,27 @@
 package org.apache.pdfbox.jbig2.decoder.arithmetic;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import javax.imageio.stream.ImageInputStream;
 
 /**
  * This class represents the arithmetic decoder, described in ISO/IEC 14492:2001 in E.3
+ * <p>
+ * The decoder either reads its input from an {@link ImageInputStream} or from a buffer that holds
+ * the data in advance, e.g. a zero-copy view of a memory-mapped file. The latter avoids the stream
+ * calls for every input byte and should be used whenever the stream isn't read by anyone else while
+ * the decoder is in use. The stream based decoder reads on demand, so that the stream position
+ * reflects what the decoder has consumed, which is required if arithmetic and Huffman coded data is
+ * interleaved.
  */
 public class ArithmeticDecoder {
 
-  private static final int QE[][] = {
+  /**
+   * Qe value, NMPS, NLPS and SWITCH for every probability estimate, see ISO/IEC 14492:2001, Table
+   * E.1.
+   */
+  private static final int QE_TABLE[][] = {
       {
           0x5601, 1, 1, 1
       }, {
@@ -124,6 +136,35 @@ public class ArithmeticDecoder {
       }
   };
 
+  /*
+   * The following tables are indexed by the state of a context, see CX, i.e. the index of the
+   * probability estimate shifted left by one, combined with the MPS in bit 0.
+   */
+
+  /** The Qe value of a state. */
+  private static final int QE[];
+
+  /** The state after an MPS exchange. */
+  private static final byte NEXT_MPS[];
+
+  /** The state after an LPS exchange, which includes switching the MPS if requested. */
+  private static final byte NEXT_LPS[];
+
+  static {
+    final int states = QE_TABLE.length << 1;
+    QE = new int[states];
+    NEXT_MPS = new byte[states];
+    NEXT_LPS = new byte[states];
+
+    for (int state = 0; state < states; state++) {
+      final int[] qe = QE_TABLE[state >> 1];
+      final int mps = state & 1;
+      QE[state] = qe[0];
+      NEXT_MPS[state] = (byte) ((qe[1] << 1) | mps);
+      NEXT_LPS[state] = (byte) ((qe[2] << 1) | (mps ^ qe[3]));
+    }
+  }
+
   private int a;
   private long c;
   private int ct;
@@ -134,11 +175,52 @@ public class ArithmeticDecoder {
 
   private final ImageInputStream iis;
 
+  /** The input data if the decoder isn't backed by a stream, read with absolute accesses only. */
+  private final ByteBuffer data;
+
+  /** The amount of bytes of {@link #data}. */
+  private final int dataLength;
+
+  /** The position of the next byte to read from {@link #data}. */
+  private int dataPos;
+
+  /**
+   * Creates a decoder which reads the stream on demand, starting at the current stream position.
+   * 
+   * @param iis - The stream to read from.
+   * @throws IOException if an error occurs while reading from the stream.
+   */
   public ArithmeticDecoder(ImageInputStream iis) throws IOException {
     this.iis = iis;
+    this.data = null;
+    this.dataLength = 0;
     init();
   }
 
+  /**
+   * Creates a decoder which reads the given data. The data is treated like a stream which ends
+   * after the last byte of the array.
+   * 
+   * @param data - The data to decode.
+   */
+  public ArithmeticDecoder(byte[] data) {
+    this(ByteBuffer.wrap(data));
+  }
+
+  /**
+   * Creates a decoder which reads the remaining bytes of the given buffer. The data is treated like
+   * a stream which ends at the limit of the buffer. Neither the buffer's content nor its position
+   * are copied or changed.
+   * 
+   * @param data - The data to decode.
+   */
+  public ArithmeticDecoder(ByteBuffer data) {
+    this.iis = null;
+    this.data = data.slice();
+    this.dataLength = this.data.limit();
+    initFromData();
+  }
+
   private void init() throws IOException {
     this.streamPos0 = iis.getStreamPosition();
     b = this.iis.read();
@@ -152,30 +234,66 @@ public class ArithmeticDecoder {
     a = 0x8000;
   }
 
-  public int decode(CX cx) throws IOException {
-    int d;
-    final int qeValue = QE[cx.cx()][0];
-    final int icx = cx.cx();
+  private void initFromData() {
+    b = readData();
 
-    a -= qeValue;
+    c = b << 16;
 
-    if ((c >> 16) < qeValue) {
-      d = lpsExchange(cx, icx, qeValue);
-      renormalize();
-    } else {
-      c -= (qeValue << 16);
-      if ((a & 0x8000) == 0) {
-        d = mpsExchange(cx, icx);
-        renormalize();
+    byteInFromData();
+
+    c <<= 7;
+    ct -= 7;
+    a = 0x8000;
+  }
+
+  public int decode(CX cx) throws IOException {
+    final byte[] states = cx.state;
+    final int index = cx.index;
+    final int state = states[index];
+    final int qe = QE[state];
+
+    a -= qe;
+
+    if ((c >> 16) < qe) {
+      final int d;
+      // LPS exchange, the MPS is decoded if A is smaller than Qe after the interval exchange
+      if (a < qe) {
+        states[index] = NEXT_MPS[state];
+        d = state & 1;
       } else {
-        return cx.mps();
+        states[index] = NEXT_LPS[state];
+        d = 1 - (state & 1);
       }
+      a = qe;
+      renormalize();
+      return d;
     }
 
+    c -= (qe << 16);
+
+    if ((a & 0x8000) != 0) {
+      return state & 1;
+    }
+
+    final int d;
+    // MPS exchange, the LPS is decoded if A is smaller than Qe
+    if (a < qe) {
+      states[index] = NEXT_LPS[state];
+      d = 1 - (state & 1);
+    } else {
+      states[index] = NEXT_MPS[state];
+      d = state & 1;
+    }
+    renormalize();
     return d;
   }
 
   private void byteIn() throws IOException {
+    if (null != data) {
+      byteInFromData();
+      return;
+    }
+
     if (iis.getStreamPosition() > streamPos0) {
       iis.seek(iis.getStreamPosition() - 1);
     }
@@ -201,6 +319,47 @@ public class ArithmeticDecoder {
     c &= 0xffffffffL;
   }
 
+  /**
+   * Does exactly what {@link #byteIn()} does for a stream, including the repositioning in front of
+   * a marker and the handling of the end of data, but on the array.
+   */
+  private void byteInFromData() {
+    if (dataPos > 0) {
+      dataPos--;
+    }
+
+    b = readData();
+
+    if (b == 0xFF) {
+      final int b1 = readData();
+      if (b1 > 0x8f) {
+        c += 0xff00;
+        ct = 8;
+        dataPos -= 2;
+      } else {
+        c += b1 << 9;
+        ct = 7;
+      }
+    } else {
+      b = readData();
+      c += b << 8;
+      ct = 8;
+    }
+
+    c &= 0xffffffffL;
+  }
+
+  /**
+   * Reads the next byte of the data like {@link ImageInputStream#read()}: returns -1 and stays at
+   * the end if there is no more data.
+   */
+  private int readData() {
+    if (dataPos < dataLength) {
+      return data.get(dataPos++) & 0xff;
+    }
+    return -1;
+  }
+
   private void renormalize() throws IOException {
     do {
       if (ct == 0) {
@@ -216,42 +375,6 @@ public class ArithmeticDecoder {
     c &= 0xffffffffL;
   }
 
-  private int mpsExchange(CX cx, int icx) {
-    final int mps = cx.mps();
-
-    if (a < QE[icx][0]) {
-
-      if (QE[icx][3] == 1) {
-        cx.toggleMps();
-      }
-
-      cx.setCx(QE[icx][2]);
-      return 1 - mps;
-    } else {
-      cx.setCx(QE[icx][1]);
-      return mps;
-    }
-  }
-
-  private int lpsExchange(CX cx, int icx, int qeValue) {
-    final int mps = cx.mps();
-
-    if (a < qeValue) {
-      cx.setCx(QE[icx][1]);
-      a = qeValue;
-
-      return mps;
-    } else {
-      if (QE[icx][3] == 1) {
-        cx.toggleMps();
-      }
-
-      cx.setCx(QE[icx][2]);
-      a = qeValue;
-      return 1 - mps;
-    }
-  }
-
   int getA() {
     return a;
   }
@@ -20,12 +20,15 @@ package org.apache.pdfbox.jbig2.decoder.arithmetic;
 /**
  * CX represents the context used by arithmetic decoding and arithmetic integer decoding. It selects
  * the probability estimate and statistics used during decoding procedure.
+ * <p>
+ * The state of every context is kept in a single byte: the index of the probability estimate in the
+ * upper bits and the "more predictable symbol" in bit 0. This way the decoder needs a single array
+ * access to read or update a context.
  */
 public final class CX {
-  private int index;
+  int index;
 
-  private final byte cx[];
-  private final byte mps[];
+  final byte state[];
 
   /**
    * @param size - Amount of context values.
@@ -33,30 +36,29 @@ public final class CX {
    */
   public CX(int size, int index) {
     this.index = index;
-    cx = new byte[size];
-    mps = new byte[size];
+    state = new byte[size];
   }
 
   protected int cx() {
-    return cx[index] & 0x7f;
+    return state[index] >> 1;
   }
 
   protected void setCx(int value) {
-    cx[index] = (byte) (value & 0x7f);
+    state[index] = (byte) (((value & 0x7f) << 1) | (state[index] & 1));
   }
 
   /**
    * @return The decision. Possible values are {@code 0} or {@code 1}.
    */
   protected byte mps() {
-    return mps[index];
+    return (byte) (state[index] & 1);
   }
 
   /**
    * Flips the bit in actual "more predictable symbol" array element.
    */
   protected void toggleMps() {
-    mps[index] ^= 1;
+    state[index] ^= 1;
   }
 
   protected int getIndex() {
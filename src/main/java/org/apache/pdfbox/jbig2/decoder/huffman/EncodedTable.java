@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.pdfbox.jbig2.JBIG2ImageReader;
 import org.apache.pdfbox.jbig2.io.SubInputStream;
 import org.apache.pdfbox.jbig2.segments.Table;
 
@@ -84,7 +85,8 @@ public class EncodedTable extends HuffmanTable {
       codeTable.add(new Code(prefLen, -1, -1, false));
     }
 
-    System.out.println(codeTableToString(codeTable));
+    if (JBIG2ImageReader.DEBUG)
+      System.out.println(codeTableToString(codeTable));
 
     initTree(codeTable);
   }
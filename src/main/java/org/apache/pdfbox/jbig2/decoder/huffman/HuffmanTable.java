@@ -17,12 +17,18 @@
 
 package org.apache.pdfbox.jbig2.decoder.huffman;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import javax.imageio.stream.ImageInputStream;
 
 import org.apache.pdfbox.jbig2.JBIG2ImageReader;
+import org.apache.pdfbox.jbig2.io.BitReader;
+import org.apache.pdfbox.jbig2.io.SubInputStream;
 
 /**
  * This abstract class is the base class for all types of huffman tables.
@@ -48,28 +54,290 @@ public abstract class HuffmanTable {
 
     @Override
     public String toString() {
-      return (code != -1 ? ValueNode.bitPattern(code, prefixLength) : "?") + "/" + prefixLength + "/" + rangeLength
+      return (code != -1 ? bitPattern(code, prefixLength) : "?") + "/" + prefixLength + "/" + rangeLength
           + "/" + rangeLow;
     }
   }
 
-  private InternalNode rootNode = new InternalNode();
+  /** The maximum amount of prefix bits that are resolved by a single lookup. */
+  private static final int LOOKUP_BITS = 8;
+
+  /**
+   * The lookup tables of all levels, starting with the root table. An entry is indexed by the next
+   * bits of the stream and is either
+   * <ul>
+   * <li>{@code 0} if no code starts with these bits,</li>
+   * <li>positive for a code that ends within these bits: {@code (codeIndex << 4) | bitsOfTheCode}
+   * </li>
+   * <li>negative for longer codes: {@code -((offsetOfNextTable << 4) | bitsOfNextTable)}.</li>
+   * </ul>
+   */
+  private int[] lookup = new int[0];
+  private int lookupSize;
+  private int rootBits;
+
+  /** Range length, low value and type of each code, indexed by the lookup entries. */
+  private int[] rangeLengths;
+  private int[] rangeLows;
+  private boolean[] isLowerRanges;
+
+  private List<Code> codeTable;
 
   public void initTree(List<Code> codeTable) {
     preprocessCodes(codeTable);
 
-    for (Code c : codeTable) {
-      rootNode.append(c);
+    this.codeTable = codeTable;
+    rangeLengths = new int[codeTable.size()];
+    rangeLows = new int[codeTable.size()];
+    isLowerRanges = new boolean[codeTable.size()];
+
+    final List<Integer> usedCodes = new ArrayList<Integer>();
+    for (int i = 0; i < codeTable.size(); i++) {
+      final Code c = codeTable.get(i);
+      rangeLengths[i] = c.rangeLength;
+      rangeLows[i] = c.rangeLow;
+      isLowerRanges[i] = c.isLowerRange;
+
+      // ignore unused codes
+      if (c.prefixLength > 0) {
+        usedCodes.add(i);
+      }
+    }
+
+    if (!usedCodes.isEmpty()) {
+      final int root = buildLookupTable(usedCodes, 0);
+      rootBits = -root & 0xf;
+    }
+  }
+
+  /**
+   * Builds the lookup table for the given codes, of which the first {@code consumedBits} bits have
+   * already been resolved, and all tables following it.
+   * 
+   * @return The entry that refers to the new table.
+   */
+  private int buildLookupTable(List<Integer> codes, int consumedBits) {
+    int maxPrefixLength = 0;
+    for (int i : codes) {
+      maxPrefixLength = Math.max(maxPrefixLength, codeTable.get(i).prefixLength);
+    }
+
+    final int bits = Math.min(maxPrefixLength - consumedBits, LOOKUP_BITS);
+    final int offset = allocateLookupTable(1 << bits);
+
+    final List<List<Integer>> longerCodes = new ArrayList<List<Integer>>(Collections.<List<Integer>> nCopies(
+        1 << bits, null));
+
+    for (int i : codes) {
+      final Code c = codeTable.get(i);
+      final int remainingBits = c.prefixLength - consumedBits;
+      final int code = c.code & ((1 << remainingBits) - 1);
+
+      if (remainingBits <= bits) {
+        // All entries starting with the code's remaining bits resolve to the code
+        final int first = code << (bits - remainingBits);
+        final int last = first + (1 << (bits - remainingBits));
+        for (int index = first; index < last; index++) {
+          if (lookup[offset + index] != 0 || longerCodes.get(index) != null)
+            throw new IllegalStateException("already have a code for " + c);
+          lookup[offset + index] = (i << 4) | remainingBits;
+        }
+      } else {
+        final int index = code >>> (remainingBits - bits);
+        if (lookup[offset + index] != 0)
+          throw new IllegalStateException("already have a code for " + c);
+        if (longerCodes.get(index) == null)
+          longerCodes.set(index, new ArrayList<Integer>());
+        longerCodes.get(index).add(i);
+      }
     }
+
+    for (int index = 0; index < longerCodes.size(); index++) {
+      if (longerCodes.get(index) != null) {
+        // Building the next table may reallocate the lookup array
+        final int entry = buildLookupTable(longerCodes.get(index), consumedBits + bits);
+        lookup[offset + index] = entry;
+      }
+    }
+
+    return -((offset << 4) | bits);
   }
 
+  private int allocateLookupTable(int size) {
+    if (lookupSize + size > lookup.length) {
+      lookup = Arrays.copyOf(lookup, Math.max(lookup.length * 2, lookupSize + size));
+    }
+    final int offset = lookupSize;
+    lookupSize += size;
+    return offset;
+  }
+
+  /**
+   * Decodes a value. The prefix is resolved with up to {@link #LOOKUP_BITS} bits per lookup, the
+   * range bits are read at once.
+   * 
+   * @param iis - The stream to read the bits from.
+   * @return The decoded value or {@link Long#MAX_VALUE} for the out-of-band value.
+   * @throws IOException if the stream ends or doesn't contain a valid code.
+   */
   public long decode(ImageInputStream iis) throws IOException {
-    return rootNode.decode(iis);
+    return decode(iis, 0, rootBits);
+  }
+
+  /**
+   * Decodes a value like {@link #decode(ImageInputStream)}, but takes the bits from the stream's
+   * {@link BitReader}.
+   * 
+   * @param sis - The stream to read the bits from.
+   * @return The decoded value or {@link Long#MAX_VALUE} for the out-of-band value.
+   * @throws IOException if the stream ends or doesn't contain a valid code.
+   */
+  public long decode(SubInputStream sis) throws IOException {
+    final BitReader reader = sis.getBitReader();
+    try {
+      return decode(reader);
+    } finally {
+      sis.seek(reader.getPosition());
+      sis.setBitOffset(reader.getBitOffset());
+    }
+  }
+
+  /**
+   * Decodes a value. The prefix is looked up in the reader's accumulator without consuming more
+   * bits than the code has.
+   * 
+   * @param reader - The reader to take the bits from.
+   * @return The decoded value or {@link Long#MAX_VALUE} for the out-of-band value.
+   * @throws IOException if the data ends or doesn't contain a valid code.
+   */
+  public long decode(BitReader reader) throws IOException {
+    int offset = 0;
+    int bits = rootBits;
+
+    while (true) {
+      // Bits beyond the end of the data are read as zeros, the code might still be shorter
+      final int index = bits > 0 ? (int) reader.peekBits(bits) : 0;
+      final int entry = lookup.length > 0 ? lookup[offset + index] : 0;
+
+      if (entry > 0) {
+        final int codeBits = entry & 0xf;
+        if (!reader.hasBits(codeBits))
+          throw new EOFException();
+
+        reader.skipBits(codeBits);
+        return decodeRange(reader, entry >>> 4);
+      } else if (entry < 0) {
+        if (!reader.hasBits(bits))
+          throw new EOFException();
+
+        reader.skipBits(bits);
+        offset = -entry >>> 4;
+        bits = -entry & 0xf;
+      } else {
+        throw new IOException("Invalid huffman code at position " + reader.getPosition() + ", bit "
+            + reader.getBitOffset());
+      }
+    }
+  }
+
+  private long decode(ImageInputStream iis, int offset, int bits) throws IOException {
+    while (true) {
+      final long position = iis.getStreamPosition();
+      final int bitOffset = iis.getBitOffset();
+
+      int availableBits = bits;
+      int index;
+      try {
+        index = (int) iis.readBits(bits);
+      } catch (EOFException e) {
+        // Fewer bits are left than looked up, the code might still be shorter
+        iis.seek(position);
+        iis.setBitOffset(bitOffset);
+        availableBits = 0;
+        index = 0;
+        try {
+          while (availableBits < bits) {
+            index = (index << 1) | iis.readBit();
+            availableBits++;
+          }
+        } catch (EOFException endOfStream) {
+          index <<= bits - availableBits;
+        }
+      }
+
+      final int entry = lookup.length > 0 ? lookup[offset + index] : 0;
+
+      if (entry > 0) {
+        final int codeBits = entry & 0xf;
+        if (codeBits > availableBits)
+          throw new EOFException();
+        if (codeBits < availableBits)
+          unreadBits(iis, availableBits - codeBits);
+
+        return decodeRange(iis, entry >>> 4);
+      } else if (entry < 0) {
+        if (bits > availableBits)
+          throw new EOFException();
+
+        offset = -entry >>> 4;
+        bits = -entry & 0xf;
+      } else {
+        throw new IOException("Invalid huffman code at position " + position + ", bit " + bitOffset);
+      }
+    }
+  }
+
+  private long decodeRange(ImageInputStream iis, int codeIndex) throws IOException {
+    final int rangeLength = rangeLengths[codeIndex];
+
+    if (rangeLength == -1) {
+      /* out-of-band */
+      return Long.MAX_VALUE;
+    }
+
+    if (isLowerRanges[codeIndex]) {
+      /* B.4 4) */
+      return (rangeLows[codeIndex] - iis.readBits(rangeLength));
+    } else {
+      /* B.4 5) */
+      return rangeLows[codeIndex] + iis.readBits(rangeLength);
+    }
+  }
+
+  private long decodeRange(BitReader reader, int codeIndex) throws IOException {
+    final int rangeLength = rangeLengths[codeIndex];
+
+    if (rangeLength == -1) {
+      /* out-of-band */
+      return Long.MAX_VALUE;
+    }
+
+    if (isLowerRanges[codeIndex]) {
+      /* B.4 4) */
+      return (rangeLows[codeIndex] - reader.readBits(rangeLength));
+    } else {
+      /* B.4 5) */
+      return rangeLows[codeIndex] + reader.readBits(rangeLength);
+    }
+  }
+
+  private static void unreadBits(ImageInputStream iis, int bits) throws IOException {
+    final long bitPosition = (iis.getStreamPosition() << 3) + iis.getBitOffset() - bits;
+    iis.seek(bitPosition >> 3);
+    iis.setBitOffset((int) (bitPosition & 0x07));
   }
 
   @Override
   public String toString() {
-    return rootNode + "\n";
+    return codeTable != null ? codeTableToString(codeTable) : "\n";
+  }
+
+  static String bitPattern(int v, int len) {
+    char result[] = new char[len];
+    for (int i = 1; i <= len; i++)
+      result[i - 1] = (v >> (len - i) & 1) != 0 ? '1' : '0';
+
+    return new String(result);
   }
 
   public static String codeTableToString(List<Code> codeTable) {
@@ -265,7 +265,7 @@ public class StandardTables {
 
 	private static HuffmanTable STANDARD_TABLES[] = new HuffmanTable[TABLES.length];
 
-	public static HuffmanTable getTable(int number) {
+	public static synchronized HuffmanTable getTable(int number) {
 		HuffmanTable table = STANDARD_TABLES[number - 1];
 		if (table == null) {
 			table = new StandardTable(TABLES[number - 1]);
@@ -17,13 +17,17 @@
 
 package org.apache.pdfbox.jbig2.decoder.mmr;
 
-import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import javax.imageio.stream.ImageInputStream;
 
 import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.RunLengthBitmap;
+import org.apache.pdfbox.jbig2.image.Bitmaps;
+import org.apache.pdfbox.jbig2.io.SubInputStream;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
 
 /**
  * A decompressor for MMR compression.
@@ -36,160 +40,104 @@ public class MMRDecompressor {
   /**
    * A class encapsulating the compressed raw data.
    */
-  private final class RunData {
-    private static final int MAX_RUN_DATA_BUFFER = 1024 << 7; // 1024 * 128
-    private static final int MIN_RUN_DATA_BUFFER = 3; // min. bytes to decompress
-    private static final int CODE_OFFSET = 24;
+  private static final class RunData {
 
-    /** Compressed data stream. */
-    ImageInputStream stream;
+    /** The compressed data, read with absolute accesses only. */
+    private final ByteBuffer data;
 
+    /** The amount of bytes of {@link #data}. */
+    private final int length;
+
+    /** The bit offset of the next code word in the data. */
     int offset;
-    int lastOffset = 0;
-    int lastCode = 0;
 
-    byte buffer[];
-    int bufferBase;
-    int bufferTop;
+    /** Eight bytes of the data, starting at {@link #accumulatorBase}, the first one uppermost. */
+    private long accumulator;
+
+    /** The index of the first byte in the {@link #accumulator}. */
+    private int accumulatorBase = -8;
 
     RunData(ImageInputStream stream) {
-      this.stream = stream;
-      offset = 0;
-      lastOffset = 1;
+      ByteBuffer buffer = stream instanceof SubInputStream ? ((SubInputStream) stream).getData() : null;
+      if (buffer == null) {
+        byte[] bytes;
+        try {
+          bytes = readFully(stream);
+        } catch (IOException e) {
+          bytes = new byte[0];
+          e.printStackTrace();
+        }
+        buffer = ByteBuffer.wrap(bytes);
+      }
+      data = buffer;
+      length = buffer.limit();
+    }
 
-      try {
-        long len = stream.length();
+    private static byte[] readFully(ImageInputStream stream) throws IOException {
+      final long length = stream.length();
+      byte[] bytes = new byte[length >= 0 ? (int) Math.min(length, Integer.MAX_VALUE - 8) : 4096];
 
-        len = Math.min(Math.max(MIN_RUN_DATA_BUFFER, len), MAX_RUN_DATA_BUFFER);
+      stream.seek(0);
+      int read = 0;
+      while (read < bytes.length || length < 0) {
+        if (read == bytes.length) {
+          bytes = Arrays.copyOf(bytes, read * 2);
+        }
 
-        buffer = new byte[(int) len];
-        fillBuffer(0);
-      } catch (IOException e) {
-        buffer = new byte[10];
-        e.printStackTrace();
+        final int r = stream.read(bytes, read, bytes.length - read);
+        if (r <= 0) {
+          break;
+        }
+        read += r;
       }
-    }
 
-    private final Code uncompressGetCode(Code table[]) {
-      return uncompressGetCodeLittleEndian(table);
+      return read == bytes.length ? bytes : Arrays.copyOf(bytes, read);
     }
 
-    private final Code uncompressGetCodeLittleEndian(Code table[]) {
-      final int code = uncompressGetNextCodeLittleEndian() & 0xffffff;
-      Code result = table[code >> CODE_OFFSET - FIRST_LEVEL_TABLE_SIZE];
+    /**
+     * Looks up the code word at the current offset in the given table.
+     * 
+     * @return The packed code or {@code 0} if there is no valid code word at the offset.
+     */
+    private int uncompressGetCode(int table[]) {
+      final int bits = peekBits();
+      int code = table[bits >>> CODE_OFFSET - FIRST_LEVEL_TABLE_SIZE];
 
       // perform second-level lookup
-      if (null != result && null != result.subTable) {
-        result = result.subTable[(code >> CODE_OFFSET - FIRST_LEVEL_TABLE_SIZE - SECOND_LEVEL_TABLE_SIZE)
-            & SECOND_LEVEL_TABLE_MASK];
+      if (code < 0) {
+        code = table[-code + ((bits >>> CODE_OFFSET - FIRST_LEVEL_TABLE_SIZE - SECOND_LEVEL_TABLE_SIZE)
+            & SECOND_LEVEL_TABLE_MASK)];
       }
 
-      return result;
+      return code;
     }
 
     /**
-     * Fill up the code word in little endian mode. This is a hotspot, therefore the algorithm is
-     * heavily optimised. For the frequent cases (i.e. short words) we try to get away with as
-     * little work as possible. <br>
-     * This method returns code words of 16 bits, which are aligned to the 24th bit. The lowest 8
-     * bits are used as a "queue" of bits so that an access to the actual data is only needed, when
-     * this queue becomes empty.
+     * Returns the 24 bits at the current offset, which hold the next code word left-aligned. Bits
+     * beyond the end of the data are zero.
      */
-    private final int uncompressGetNextCodeLittleEndian() {
-      try {
-
-        // the number of bits to fill (offset difference)
-        int bitsToFill = offset - lastOffset;
-
-        // check whether we can refill, or need to fill in absolute mode
-        if (bitsToFill < 0 || bitsToFill > 24) {
-          // refill at absolute offset
-          int byteOffset = (offset >> 3) - bufferBase; // offset>>3 is equivalent to offset/8
-
-          if (byteOffset >= bufferTop) {
-            byteOffset += bufferBase;
-            fillBuffer(byteOffset);
-            byteOffset -= bufferBase;
-          }
-
-          lastCode = (buffer[byteOffset] & 0xff) << 16 | (buffer[byteOffset + 1] & 0xff) << 8
-              | (buffer[byteOffset + 2] & 0xff);
-
-          int bitOffset = offset & 7; // equivalent to offset%8
-          lastCode <<= bitOffset;
-        } else {
-          // the offset to the next byte boundary as seen from the last offset
-          int bitOffset = lastOffset & 7;
-          final int avail = 7 - bitOffset;
-
-          // check whether there are enough bits in the "queue"
-          if (bitsToFill <= avail) {
-            lastCode <<= bitsToFill;
-          } else {
-            int byteOffset = (lastOffset >> 3) + 3 - bufferBase;
-
-            if (byteOffset >= bufferTop) {
-              byteOffset += bufferBase;
-              fillBuffer(byteOffset);
-              byteOffset -= bufferBase;
-            }
-
-            bitOffset = 8 - bitOffset;
-            do {
-              lastCode <<= bitOffset;
-              lastCode |= buffer[byteOffset] & 0xff;
-              bitsToFill -= bitOffset;
-              byteOffset++;
-              bitOffset = 8;
-            } while (bitsToFill >= 8);
-
-            lastCode <<= bitsToFill; // shift the rest
-          }
-        }
-        lastOffset = offset;
-
-        return lastCode;
-      } catch (IOException e) {
-        // will this actually happen? only with broken data, I'd say.
-        throw new ArrayIndexOutOfBoundsException("Corrupted RLE data caused by an IOException while reading raw data: "
-            + e.toString());
+    private int peekBits() {
+      int bitIndex = offset - (accumulatorBase << 3);
+      if (bitIndex < 0 || bitIndex > 64 - CODE_OFFSET) {
+        fillAccumulator(offset >> 3);
+        bitIndex = offset & 7;
       }
+
+      return (int) (accumulator >>> (64 - CODE_OFFSET - bitIndex)) & 0xffffff;
     }
 
-    private void fillBuffer(int byteOffset) throws IOException {
-      bufferBase = byteOffset;
-      synchronized (stream) {
-        try {
-          stream.seek(byteOffset);
-          bufferTop = stream.read(buffer);
-        } catch (EOFException e) {
-          // you never know which kind of EOF will kick in
-          bufferTop = -1;
-        }
-        // check filling degree
-        if (bufferTop > -1 && bufferTop < 3) {
-          // CK: if filling degree is too small,
-          // smoothly fill up to the next three bytes or substitute with with
-          // empty bytes
-          int read = 0;
-          while (bufferTop < 3) {
-            try {
-              read = stream.read();
-            } catch (EOFException e) {
-              read = -1;
-            }
-            buffer[bufferTop++] = read == -1 ? 0 : (byte) (read & 0xff);
-          }
+    private void fillAccumulator(int base) {
+      long value = 0;
+      if (base + 8 <= length) {
+        value = data.getLong(base);
+      } else {
+        for (int i = base; i < base + 8; i++) {
+          value = (value << 8) | (i < length ? data.get(i) & 0xff : 0);
         }
       }
-      // leave some room, in order to save a few tests in the calling code
-      bufferTop -= 3;
 
-      if (bufferTop < 0) {
-        // if we're at EOF, just supply zero-bytes
-        Arrays.fill(buffer, (byte) 0);
-        bufferTop = buffer.length - 3;
-      }
+      accumulator = value;
+      accumulatorBase = base;
     }
 
     /**
@@ -200,50 +148,22 @@ public class MMRDecompressor {
     }
   }
 
-  private static final class Code {
-    Code subTable[] = null;
-
-    final int bitLength, codeWord, runLength;
-
-    Code(int codeData[]) {
-      bitLength = codeData[0];
-      codeWord = codeData[1];
-      runLength = codeData[2];
-    }
-
-    public String toString() {
-      return bitLength + "/" + codeWord + "/" + runLength;
-    }
-
-    /**
-     * @see java.lang.Object#equals(Object)
-     */
-    public boolean equals(Object obj) {
-      return (obj instanceof Code) && //
-          ((Code) obj).bitLength == bitLength && //
-          ((Code) obj).codeWord == codeWord && //
-          ((Code) obj).runLength == runLength;
-    }
-  }
+  /** The width of the bit window a code word is looked up with. */
+  private static final int CODE_OFFSET = 24;
 
   private static final int FIRST_LEVEL_TABLE_SIZE = 8;
   private static final int FIRST_LEVEL_TABLE_MASK = (1 << FIRST_LEVEL_TABLE_SIZE) - 1;
   private static final int SECOND_LEVEL_TABLE_SIZE = 5;
   private static final int SECOND_LEVEL_TABLE_MASK = (1 << SECOND_LEVEL_TABLE_SIZE) - 1;
 
-  private static Code whiteTable[] = null;
-  private static Code blackTable[] = null;
-  private static Code modeTable[] = null;
+  /** Added to run lengths before packing, so that packed codes are positive. */
+  private static final int RUN_LENGTH_BIAS = 4;
 
-  private RunData data;
+  private static final int[] whiteTable = createLittleEndianTable(MMRConstants.WhiteCodes);
+  private static final int[] blackTable = createLittleEndianTable(MMRConstants.BlackCodes);
+  private static final int[] modeTable = createLittleEndianTable(MMRConstants.ModeCodes);
 
-  private synchronized final static void initTables() {
-    if (null == whiteTable) {
-      whiteTable = createLittleEndianTable(MMRConstants.WhiteCodes);
-      blackTable = createLittleEndianTable(MMRConstants.BlackCodes);
-      modeTable = createLittleEndianTable(MMRConstants.ModeCodes);
-    }
-  }
+  private RunData data;
 
   private final int uncompress2D(RunData runData, int[] referenceOffsets, int refRunLength, int[] runOffsets, int width) {
 
@@ -252,7 +172,7 @@ public class MMRDecompressor {
     int currentLineBitPosition = 0;
 
     boolean whiteRun = true; // Always start with a white run
-    Code code = null; // Storage var for current code being processed
+    int code = 0; // Storage var for current code being processed
 
     referenceOffsets[refRunLength] = referenceOffsets[refRunLength + 1] = width;
     referenceOffsets[refRunLength + 2] = referenceOffsets[refRunLength + 3] = width + 1;
@@ -263,15 +183,15 @@ public class MMRDecompressor {
         // Get the mode code
         code = runData.uncompressGetCode(modeTable);
 
-        if (code == null) {
+        if (code == 0) {
           runData.offset++;
           break decodeLoop;
         }
 
         // Add the code length to the bit offset
-        runData.offset += code.bitLength;
+        runData.offset += bitLength(code);
 
-        switch (code.runLength){
+        switch (runLength(code)){
           case MMRConstants.CODE_V0 :
             currentLineBitPosition = referenceOffsets[referenceBufferOffset];
             break;
@@ -289,42 +209,42 @@ public class MMRDecompressor {
 
               code = runData.uncompressGetCode(whiteRun == true ? whiteTable : blackTable);
 
-              if (code == null)
+              if (code == 0)
                 break decodeLoop;
 
-              runData.offset += code.bitLength;
-              if (code.runLength < 64) {
-                if (code.runLength < 0) {
+              runData.offset += bitLength(code);
+              if (runLength(code) < 64) {
+                if (runLength(code) < 0) {
                   runOffsets[currentBufferOffset++] = currentLineBitPosition;
-                  code = null;
+                  code = 0;
                   break decodeLoop;
                 }
-                currentLineBitPosition += code.runLength;
+                currentLineBitPosition += runLength(code);
                 runOffsets[currentBufferOffset++] = currentLineBitPosition;
                 break;
               }
-              currentLineBitPosition += code.runLength;
+              currentLineBitPosition += runLength(code);
             }
 
             final int firstHalfBitPos = currentLineBitPosition;
             for (int ever1 = 1; ever1 > 0;) {
               code = runData.uncompressGetCode(whiteRun != true ? whiteTable : blackTable);
-              if (code == null)
+              if (code == 0)
                 break decodeLoop;
 
-              runData.offset += code.bitLength;
-              if (code.runLength < 64) {
-                if (code.runLength < 0) {
+              runData.offset += bitLength(code);
+              if (runLength(code) < 64) {
+                if (runLength(code) < 0) {
                   runOffsets[currentBufferOffset++] = currentLineBitPosition;
                   break decodeLoop;
                 }
-                currentLineBitPosition += code.runLength;
+                currentLineBitPosition += runLength(code);
                 // don't generate 0-length run at EOL for cases where the line ends in an H-run.
                 if (currentLineBitPosition < width || currentLineBitPosition != firstHalfBitPos)
                   runOffsets[currentBufferOffset++] = currentLineBitPosition;
                 break;
               }
-              currentLineBitPosition += code.runLength;
+              currentLineBitPosition += runLength(code);
             }
 
             while (currentLineBitPosition < width && referenceOffsets[referenceBufferOffset] <= currentLineBitPosition) {
@@ -357,7 +277,7 @@ public class MMRDecompressor {
           default :
             System.err.println("Should not happen!");
             // Possibly MMR Decoded
-            if (runData.offset == 12 && code.runLength == MMRConstants.EOL) {
+            if (runData.offset == 12 && runLength(code) == MMRConstants.EOL) {
               runData.offset = 0;
               uncompress1D(runData, referenceOffsets, width);
               runData.offset++;
@@ -393,7 +313,7 @@ public class MMRDecompressor {
       strBuf.append(whiteRun);
       strBuf.append("\n");
       strBuf.append("code               = ");
-      strBuf.append(code);
+      strBuf.append(bitLength(code) + "/" + runLength(code));
       strBuf.append("\n");
       strBuf.append("refOffset          = ");
       strBuf.append(referenceBufferOffset);
@@ -421,7 +341,7 @@ public class MMRDecompressor {
       runOffsets[currentBufferOffset] = width;
     }
 
-    if (code == null) {
+    if (code == 0) {
       return MMRConstants.EOL;
     }
     return currentBufferOffset;
@@ -432,12 +352,24 @@ public class MMRDecompressor {
     this.height = height;
 
     data = new RunData(stream);
-
-    initTables();
   }
 
   public Bitmap uncompress() {
-    final Bitmap result = new Bitmap(width, height);
+    return uncompress(false);
+  }
+
+  /**
+   * Decodes the bitmap.
+   * 
+   * @param runLength - If {@code true}, the result is a {@link RunLengthBitmap} as long as its runs
+   *          take less memory than the packed pixels. If the runs grow beyond that, decoding
+   *          continues into a packed bitmap.
+   * @return The decoded bitmap.
+   */
+  public Bitmap uncompress(boolean runLength) {
+    RunLengthBitmap runs = runLength ? new RunLengthBitmap(width, height) : null;
+    Bitmap result = runLength ? null : new Bitmap(width, height);
+    final long packedSize = (long) ((width + 7) >> 3) * height;
 
     int[] currentOffsets = new int[width + 5];
     int[] referenceOffsets = new int[width + 5];
@@ -454,7 +386,16 @@ public class MMRDecompressor {
       }
 
       if (count > 0) {
-        fillBitmap(result, line, currentOffsets, count);
+        if (runs != null) {
+          runs.setLine(line, currentOffsets, count);
+          if (runs.getRunMemorySize() > packedSize) {
+            result = new Bitmap(width, height);
+            Bitmaps.blit(runs, result, 0, 0, CombinationOperator.OR);
+            runs = null;
+          }
+        } else {
+          fillBitmap(result, line, currentOffsets, count);
+        }
       }
 
       // Swap lines
@@ -468,57 +409,45 @@ public class MMRDecompressor {
 
     data.align();
 
-    return result;
+    return runs != null ? runs : result;
   }
 
   private void detectAndSkipEOL() {
     while (true) {
-      Code code = data.uncompressGetCode(modeTable);
-      if (null != code && code.runLength == MMRConstants.EOL) {
-        data.offset += code.bitLength;
+      final int code = data.uncompressGetCode(modeTable);
+      if (code != 0 && runLength(code) == MMRConstants.EOL) {
+        data.offset += bitLength(code);
       } else
         break;
     }
   }
 
+  /**
+   * Renders the runs of a line. The bitmap is still white, so only the black runs, which are those
+   * at odd indices, have to be drawn.
+   */
   private void fillBitmap(Bitmap result, int line, int[] currentOffsets, int count) {
+    final byte[] data = result.getByteArray();
+    final int lineStart = result.getByteIndex(0, line);
 
     int x = 0;
-    int targetByte = result.getByteIndex(0, line);
-    byte targetByteValue = 0;
     for (int index = 0; index < count; index++) {
+      final int offset = Math.min(currentOffsets[index], width);
 
-      final int offset = currentOffsets[index];
-      byte value;
-
-      if ((index & 1) == 0) {
-        value = 0;
-      } else {
-        value = 1;
-      }
-
-      while (x < offset) {
-        targetByteValue = (byte) ((targetByteValue << 1) | value);
-        x++;
-
-        if ((x & 7) == 0) {
-          result.setByte(targetByte++, targetByteValue);
-          targetByteValue = 0;
+      if (offset > x) {
+        if ((index & 1) != 0) {
+          Bitmaps.fillRun(data, lineStart, x, offset);
         }
+        x = offset;
       }
     }
-
-    if ((x & 7) != 0) {
-      targetByteValue <<= 8 - (x & 7);
-      result.setByte(targetByte, targetByteValue);
-    }
   }
 
   private final int uncompress1D(RunData runData, int[] runOffsets, int width) {
 
     boolean whiteRun = true;
     int iBitPos = 0;
-    Code code = null;
+    int code = 0;
     int refOffset = 0;
 
     loop : while (iBitPos < width) {
@@ -529,15 +458,15 @@ public class MMRDecompressor {
           code = runData.uncompressGetCode(blackTable);
         }
 
-        runData.offset += code.bitLength;
+        runData.offset += bitLength(code);
 
-        if (code.runLength < 0) {
+        if (runLength(code) < 0) {
           break loop;
         }
 
-        iBitPos += code.runLength;
+        iBitPos += runLength(code);
 
-        if (code.runLength < 64) {
+        if (runLength(code) < 64) {
           whiteRun = !whiteRun;
           runOffsets[refOffset++] = iBitPos;
           break;
@@ -549,7 +478,7 @@ public class MMRDecompressor {
       runOffsets[refOffset] = width;
     }
 
-    return code != null && code.runLength != MMRConstants.EOL ? refOffset : MMRConstants.EOL;
+    return code != 0 && runLength(code) != MMRConstants.EOL ? refOffset : MMRConstants.EOL;
   }
 
   /**
@@ -570,43 +499,63 @@ public class MMRDecompressor {
    *  &quot;v&quot; denotes a variant bit
    * </pre>
    * 
+   * Both levels are packed into a single array, the second level tables following the first level
+   * table. An entry is either a {@link #pack(int, int) packed code}, which is positive, the negated
+   * index of a second level table, or {@code 0} if there is no code word starting with these bits.
    */
-  private static Code[] createLittleEndianTable(int codes[][]) {
-    final Code firstLevelTable[] = new Code[FIRST_LEVEL_TABLE_MASK + 1];
+  private static int[] createLittleEndianTable(int codes[][]) {
+    int table[] = new int[FIRST_LEVEL_TABLE_MASK + 1];
     for (int i = 0; i < codes.length; i++) {
-      final Code code = new Code(codes[i]);
+      final int bitLength = codes[i][0];
+      final int codeWord = codes[i][1];
+      final int code = pack(bitLength, codes[i][2]);
 
-      if (code.bitLength <= FIRST_LEVEL_TABLE_SIZE) {
-        final int variantLength = FIRST_LEVEL_TABLE_SIZE - code.bitLength;
-        final int baseWord = code.codeWord << variantLength;
+      if (bitLength <= FIRST_LEVEL_TABLE_SIZE) {
+        final int variantLength = FIRST_LEVEL_TABLE_SIZE - bitLength;
+        final int baseWord = codeWord << variantLength;
 
         for (int variant = (1 << variantLength) - 1; variant >= 0; variant--) {
           final int index = baseWord | variant;
-          firstLevelTable[index] = code;
+          table[index] = code;
         }
       } else {
         // init second level table
-        final int firstLevelIndex = code.codeWord >>> code.bitLength - FIRST_LEVEL_TABLE_SIZE;
+        final int firstLevelIndex = codeWord >>> bitLength - FIRST_LEVEL_TABLE_SIZE;
 
-        if (firstLevelTable[firstLevelIndex] == null) {
-          final Code firstLevelCode = new Code(new int[3]);
-          firstLevelCode.subTable = new Code[SECOND_LEVEL_TABLE_MASK + 1];
-          firstLevelTable[firstLevelIndex] = firstLevelCode;
+        if (table[firstLevelIndex] == 0) {
+          table[firstLevelIndex] = -table.length;
+          table = Arrays.copyOf(table, table.length + SECOND_LEVEL_TABLE_MASK + 1);
         }
 
         // fill second level table
-        if (code.bitLength <= FIRST_LEVEL_TABLE_SIZE + SECOND_LEVEL_TABLE_SIZE) {
-          final Code secondLevelTable[] = firstLevelTable[firstLevelIndex].subTable;
-          final int variantLength = FIRST_LEVEL_TABLE_SIZE + SECOND_LEVEL_TABLE_SIZE - code.bitLength;
-          final int baseWord = (code.codeWord << variantLength) & SECOND_LEVEL_TABLE_MASK;
+        if (bitLength <= FIRST_LEVEL_TABLE_SIZE + SECOND_LEVEL_TABLE_SIZE) {
+          final int secondLevelTable = -table[firstLevelIndex];
+          final int variantLength = FIRST_LEVEL_TABLE_SIZE + SECOND_LEVEL_TABLE_SIZE - bitLength;
+          final int baseWord = (codeWord << variantLength) & SECOND_LEVEL_TABLE_MASK;
 
           for (int variant = (1 << variantLength) - 1; variant >= 0; variant--) {
-            secondLevelTable[baseWord | variant] = code;
+            table[secondLevelTable + (baseWord | variant)] = code;
           }
         } else
           throw new IllegalArgumentException("Code table overflow in MMRDecompressor");
       }
     }
-    return firstLevelTable;
+    return table;
+  }
+
+  /**
+   * Packs the run length and bit length of a code into a single integer, the bit length taking the
+   * lowest four bits.
+   */
+  private static int pack(int bitLength, int runLength) {
+    return (runLength + RUN_LENGTH_BIAS) << 4 | bitLength;
+  }
+
+  private static int bitLength(int code) {
+    return code & 0xf;
+  }
+
+  private static int runLength(int code) {
+    return (code >> 4) - RUN_LENGTH_BIAS;
   }
 }
\ No newline at end of file
@@ -18,6 +18,7 @@
 package org.apache.pdfbox.jbig2.image;
 
 import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 import org.apache.pdfbox.jbig2.Bitmap;
 
@@ -26,12 +27,16 @@ final class BitmapScanline extends Scanline {
   private Bitmap bitmap;
   private WritableRaster raster;
 
+  /** The black runs of the bitmap if it is a run-length bitmap, {@code null} otherwise. */
+  private final int[][] runs;
+
   private int[] lineBuffer;
 
   public BitmapScanline(final Bitmap src, final WritableRaster dst, final int width) {
     super(width);
     this.bitmap = src;
     this.raster = dst;
+    this.runs = Bitmaps.getRuns(src);
     lineBuffer = new int[length];
   }
 
@@ -43,17 +48,39 @@ final class BitmapScanline extends Scanline {
   @Override
   protected void fetch(int x, final int y) {
     lineBuffer = new int[length]; // really required?
+    if (runs != null) {
+      fetchRuns(x, runs[y]);
+      return;
+    }
     int srcByteIdx = bitmap.getByteIndex(x, y);
     while (x < length) {
       final byte srcByte = (byte) ~bitmap.getByte(srcByteIdx++);
       final int bits = bitmap.getWidth() - x > 8 ? 8 : bitmap.getWidth() - x;
-      for (int bitPosition = bits - 1; bitPosition >= 0; bitPosition--, x++) {
+      for (int bitPosition = 7; bitPosition >= 8 - bits; bitPosition--, x++) {
         if (((srcByte >> bitPosition) & 0x1) != 0)
           lineBuffer[x] = 255;
       }
     }
   }
 
+  /**
+   * Like {@link #fetch(int, int)}, but for a line of black runs: all pixels are set to white and
+   * then the runs are cleared.
+   */
+  private void fetchRuns(final int x, final int[] line) {
+    final int end = Math.min(length, bitmap.getWidth());
+    if (x >= end) {
+      return;
+    }
+
+    Arrays.fill(lineBuffer, x, end, 255);
+    for (int i = 0; i < line.length && line[i] < end; i += 2) {
+      if (line[i + 1] > x) {
+        Arrays.fill(lineBuffer, Math.max(line[i], x), Math.min(line[i + 1], end), 0);
+      }
+    }
+  }
+
   @Override
   protected void filter(final int[] preShift, final int[] postShift, final Weighttab[] tabs, final Scanline dst) {
     final BitmapScanline dstBitmapScanline = (BitmapScanline) dst;
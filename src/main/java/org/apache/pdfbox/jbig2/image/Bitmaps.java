@@ -23,17 +23,49 @@ import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
 import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import javax.imageio.ImageReadParam;
 
 import org.apache.pdfbox.jbig2.Bitmap;
 import org.apache.pdfbox.jbig2.JBIG2ReadParam;
+import org.apache.pdfbox.jbig2.RunLengthBitmap;
+import org.apache.pdfbox.jbig2.SubBitmap;
+import org.apache.pdfbox.jbig2.TiledBitmap;
 import org.apache.pdfbox.jbig2.util.CombinationOperator;
 
 public class Bitmaps {
 
+  /** Maps a set bit to black and a cleared bit to white. */
+  private static final IndexColorModel BINARY_COLOR_MODEL = new IndexColorModel(1, 2, //
+      new byte[]{
+          (byte) 0xff, 0x00
+      }, new byte[]{
+          (byte) 0xff, 0x00
+      }, new byte[]{
+          (byte) 0xff, 0x00
+      });
+
+  /**
+   * Maps each possible byte value of a bitmap to the eight samples of an 8-bit raster. A set bit
+   * (black) is expanded to {@code 0}, a cleared bit (white) to {@code 1}.
+   */
+  private static final byte[] PIXEL_EXPANSION = new byte[256 << 3];
+
+  static {
+    for (int value = 0; value < 256; value++) {
+      for (int bit = 0; bit < 8; bit++) {
+        PIXEL_EXPANSION[(value << 3) + bit] = (byte) ((~value >> (7 - bit)) & 0x1);
+      }
+    }
+  }
+
   public static WritableRaster asRaster(final Bitmap bitmap) {
     return asRaster(bitmap, FilterType.Gaussian);
   }
@@ -66,14 +98,7 @@ public class Bitmaps {
       scaleX = scaleY = 1;
     }
 
-    Rectangle sourceRegion = param.getSourceRegion();
-    if (sourceRegion != null && !bitmap.getBounds().equals(sourceRegion)) {
-      // make sure we don't request an area outside of the source bitmap
-      sourceRegion = bitmap.getBounds().intersection(sourceRegion);
-
-      // get region of interest
-      bitmap = Bitmaps.extract(sourceRegion, bitmap);
-    }
+    bitmap = extractSourceRegion(bitmap, param);
 
     /*
      * Subsampling is the advance of columns/rows for each pixel in the according direction. The
@@ -87,38 +112,61 @@ public class Bitmaps {
 
     final boolean requiresScaling = scaleX != 1 || scaleY != 1;
 
+    if (requiresScaling) {
+      scaleX /= (double) param.getSourceXSubsampling();
+      scaleY /= (double) param.getSourceYSubsampling();
+    } else {
+      bitmap = applySubsampling(bitmap, param);
+    }
+
+    return buildRaster(bitmap, filterType, scaleX, scaleY);
+  }
+
+  /**
+   * Returns the part of the bitmap which is specified by the source region of the given
+   * {@link ImageReadParam}. If no source region is set or it covers the whole bitmap, the bitmap
+   * itself is returned.
+   */
+  private static Bitmap extractSourceRegion(Bitmap bitmap, final ImageReadParam param) {
+    Rectangle sourceRegion = param.getSourceRegion();
+    if (sourceRegion != null && !bitmap.getBounds().equals(sourceRegion)) {
+      // make sure we don't request an area outside of the source bitmap
+      sourceRegion = bitmap.getBounds().intersection(sourceRegion);
+
+      // get region of interest
+      bitmap = Bitmaps.extract(sourceRegion, bitmap);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Applies the subsampling of the given {@link ImageReadParam} in its original manner, i.e. by
+   * skipping columns/rows. Use this only if no scaling is performed.
+   */
+  private static Bitmap applySubsampling(Bitmap bitmap, final ImageReadParam param) {
     final boolean requiresXSubsampling = param.getSourceXSubsampling() != 1;
     final boolean requiresYSubsampling = param.getSourceYSubsampling() != 1;
 
+    if ((requiresXSubsampling || requiresYSubsampling) && getRuns(bitmap) != null) {
+      // Reading the pixels creates the packed pixels, which mustn't happen to a cached bitmap
+      bitmap = extract(bitmap.getBounds(), bitmap);
+    }
+
     if (requiresXSubsampling && requiresYSubsampling) {
       // Apply vertical and horizontal subsampling
-      if (requiresScaling) {
-        scaleX /= (double) param.getSourceXSubsampling();
-        scaleY /= (double) param.getSourceYSubsampling();
-      } else {
-        bitmap = subsample(bitmap, param);
-      }
+      bitmap = subsample(bitmap, param);
     } else {
       if (requiresXSubsampling) {
         // Apply horizontal subsampling only
-        if (requiresScaling) {
-          scaleX /= (double) param.getSourceXSubsampling();
-        } else {
-          bitmap = Bitmaps.subsampleX(bitmap, param.getSourceXSubsampling(), param.getSubsamplingXOffset());
-        }
+        bitmap = Bitmaps.subsampleX(bitmap, param.getSourceXSubsampling(), param.getSubsamplingXOffset());
       }
 
       if (requiresYSubsampling) {
         // Apply vertical subsampling only
-        if (requiresScaling) {
-          scaleY /= (double) param.getSourceYSubsampling();
-        } else {
-          bitmap = Bitmaps.subsampleY(bitmap, param.getSourceYSubsampling(), param.getSubsamplingYOffset());
-        }
+        bitmap = Bitmaps.subsampleY(bitmap, param.getSourceYSubsampling(), param.getSubsamplingYOffset());
       }
     }
-
-    return buildRaster(bitmap, filterType, scaleX, scaleY);
+    return bitmap;
   }
 
   private static WritableRaster buildRaster(final Bitmap bitmap, final FilterType filterType, final double scaleX,
@@ -136,21 +184,126 @@ public class Bitmaps {
       final Filter filter = Filter.byType(filterType);
       resizer.resize(bitmap, bitmap.getBounds() /* sourceRegion */, dst, dstBounds, filter, filter);
     } else {
-      // scaling not required, paste bitmap into raster pixel per pixel
-      int byteIndex = 0;
-      for (int y = 0; y < bitmap.getHeight(); y++) {
-        for (int x = 0; x < bitmap.getWidth(); byteIndex++) {
-          final int pixels = (~bitmap.getByte(byteIndex)) & 0xFF;
-          final int relevantPixels = bitmap.getWidth() - x > 8 ? 8 : bitmap.getWidth() - x;
-          final int endIdx = 7 - relevantPixels;
-          for (int bytePosition = 7; bytePosition > endIdx; bytePosition--, x++) {
-            dst.setSample(x, y, 0, (pixels >> bytePosition) & 0x1);
-          }
+      // scaling not required, expand the bitmap into the raster row by row
+      expandPixels(bitmap, dst);
+    }
+
+    return dst;
+  }
+
+  /**
+   * Expands the packed pixels of the given bitmap into the 8-bit raster {@code dst}, which must
+   * have the bitmap's dimensions. Each source byte is converted to eight samples via
+   * {@link #PIXEL_EXPANSION}.
+   * 
+   * @param bitmap - The source bitmap.
+   * @param dst - The raster to be filled.
+   */
+  private static void expandPixels(final Bitmap bitmap, final WritableRaster dst) {
+    final byte[] dstData = ((DataBufferByte) dst.getDataBuffer()).getData();
+
+    final int[][] runs = getRuns(bitmap);
+    if (runs != null) {
+      expandRuns(runs, bitmap.getWidth(), dstData);
+      return;
+    }
+
+    final TiledBitmap tiled = getTiled(bitmap);
+    if (tiled != null) {
+      expandTiles(tiled, dstData);
+      return;
+    }
+
+    final int width = bitmap.getWidth();
+
+    if (bitmap instanceof SubBitmap && !((SubBitmap) bitmap).isDetached()) {
+      // Expand the view line by line instead of copying the whole region out of its parent
+      final byte[] line = new byte[bitmap.getRowStride()];
+      for (int y = 0, dstIdx = 0; y < bitmap.getHeight(); y++, dstIdx += width) {
+        ((SubBitmap) bitmap).getBytes(y * line.length, line, 0, line.length);
+        expandLine(line, 0, dstData, dstIdx, width);
+      }
+      return;
+    }
+
+    final byte[] src = bitmap.getByteArray();
+
+    for (int y = 0, srcLineStartIdx = 0, dstIdx = 0; y < bitmap.getHeight(); y++, srcLineStartIdx += bitmap
+        .getRowStride(), dstIdx += width) {
+      expandLine(src, srcLineStartIdx, dstData, dstIdx, width);
+    }
+  }
+
+  /**
+   * Expands {@code pixels} packed pixels starting at {@code srcIdx} to the samples starting at
+   * {@code dstIdx}.
+   */
+  private static void expandLine(final byte[] src, int srcIdx, final byte[] dst, int dstIdx, final int pixels) {
+    final int fullBytes = pixels >> 3;
+    final int remainingPixels = pixels & 0x07;
+
+    for (int i = 0; i < fullBytes; i++, dstIdx += 8) {
+      System.arraycopy(PIXEL_EXPANSION, (src[srcIdx++] & 0xff) << 3, dst, dstIdx, 8);
+    }
+
+    if (remainingPixels != 0) {
+      System.arraycopy(PIXEL_EXPANSION, (src[srcIdx] & 0xff) << 3, dst, dstIdx, remainingPixels);
+    }
+  }
+
+  /**
+   * Like {@link #expandPixels(Bitmap, WritableRaster)}, but tile by tile, so that the packed pixels
+   * of the whole {@link TiledBitmap} are never created.
+   */
+  private static void expandTiles(final TiledBitmap bitmap, final byte[] dst) {
+    final int width = bitmap.getWidth();
+    final int height = bitmap.getHeight();
+
+    for (int row = 0; row < bitmap.getRows(); row++) {
+      for (int column = 0; column < bitmap.getColumns(); column++) {
+        final Bitmap tile = bitmap.getTile(column, row);
+        final int startX = column * bitmap.getTileWidth();
+        final int startY = row * bitmap.getTileHeight();
+        final int pixels = Math.min(bitmap.getTileWidth(), width - startX);
+        final int lines = Math.min(bitmap.getTileHeight(), height - startY);
+
+        final byte[] src = tile.getByteArray();
+        for (int y = 0; y < lines; y++) {
+          expandLine(src, y * tile.getRowStride(), dst, (startY + y) * width + startX, pixels);
         }
       }
     }
+  }
 
-    return dst;
+  /**
+   * Returns the given bitmap if it is a {@link TiledBitmap} that still has its tiles, {@code null}
+   * otherwise.
+   */
+  static TiledBitmap getTiled(final Bitmap bitmap) {
+    return bitmap instanceof TiledBitmap && ((TiledBitmap) bitmap).isTiled() ? (TiledBitmap) bitmap : null;
+  }
+
+  /**
+   * Like {@link #expandPixels(Bitmap, WritableRaster)}, but for the black runs of a
+   * {@link RunLengthBitmap}: the raster is filled with white and only the runs are drawn.
+   */
+  private static void expandRuns(final int[][] runs, final int width, final byte[] dst) {
+    Arrays.fill(dst, (byte) 1);
+
+    for (int y = 0, lineStart = 0; y < runs.length; y++, lineStart += width) {
+      final int[] line = runs[y];
+      for (int i = 0; i < line.length; i += 2) {
+        Arrays.fill(dst, lineStart + line[i], lineStart + line[i + 1], (byte) 0);
+      }
+    }
+  }
+
+  /**
+   * Returns the black runs of the given bitmap if it is a {@link RunLengthBitmap} that still has
+   * them, {@code null} otherwise.
+   */
+  static int[][] getRuns(final Bitmap bitmap) {
+    return bitmap instanceof RunLengthBitmap ? ((RunLengthBitmap) bitmap).getRuns() : null;
   }
 
   public static BufferedImage asBufferedImage(Bitmap bitmap) {
@@ -174,8 +327,6 @@ public class Bitmaps {
     if (param == null)
       throw new IllegalArgumentException("param must not be null");
 
-    final WritableRaster raster = asRaster(bitmap, param, filterType);
-
     final Dimension sourceRenderSize = param.getSourceRenderSize();
 
     final double scaleX;
@@ -187,32 +338,52 @@ public class Bitmaps {
       scaleX = scaleY = 1d;
     }
 
-    ColorModel cm = null;
     final boolean isScaled = scaleX != 1 || scaleY != 1;
-    if (isScaled) {
-      final int size = 256;
-      final int divisor = size - 1;
-
-      final byte[] gray = new byte[size];
-      for (int i = size - 1, s = 0; i >= 0; i--, s++) {
-        gray[i] = (byte) (255 - s * 255 / divisor);
+    if (!isScaled) {
+      Bitmap result = applySubsampling(extractSourceRegion(bitmap, param), param);
+      if (result == bitmap || getTiled(result) != null || getRuns(result) != null) {
+        // The bitmap might be cached, so the image gets its own pixels. Tiles and runs are copied
+        // instead of being discarded in favour of the packed pixels.
+        result = extract(result.getBounds(), result);
       }
-      cm = new IndexColorModel(8, size, gray, gray, gray);
-    } else {
+      return asPackedImage(result);
+    }
+
+    final WritableRaster raster = asRaster(bitmap, param, filterType);
+
+    final int size = 256;
+    final int divisor = size - 1;
 
-      cm = new IndexColorModel(8, 2, //
-          new byte[]{
-              0x00, (byte) 0xff
-          }, new byte[]{
-              0x00, (byte) 0xff
-          }, new byte[]{
-              0x00, (byte) 0xff
-          });
+    final byte[] gray = new byte[size];
+    for (int i = size - 1, s = 0; i >= 0; i--, s++) {
+      gray[i] = (byte) (255 - s * 255 / divisor);
     }
+    final ColorModel cm = new IndexColorModel(8, size, gray, gray, gray);
 
     return new BufferedImage(cm, raster, false, null);
   }
 
+  /**
+   * Returns a {@link BufferedImage} of type {@link BufferedImage#TYPE_BYTE_BINARY} that is backed
+   * directly by the byte array of the given bitmap. No pixel data is copied, so changes to the
+   * image are visible in the bitmap and vice versa. The polarity of the bitmap ({@code 1} for
+   * black) is handled by the color model.
+   * 
+   * @param bitmap - The bitmap to be wrapped.
+   * @return A 1-bit packed {@link BufferedImage} that shares the data of the bitmap.
+   */
+  public static BufferedImage asPackedImage(final Bitmap bitmap) {
+    if (bitmap == null)
+      throw new IllegalArgumentException("bitmap must not be null");
+
+    final DataBufferByte dataBuffer = new DataBufferByte(bitmap.getByteArray(), bitmap.getByteArray().length);
+    final MultiPixelPackedSampleModel sampleModel = new MultiPixelPackedSampleModel(DataBuffer.TYPE_BYTE,
+        bitmap.getWidth(), bitmap.getHeight(), 1, bitmap.getRowStride(), 0);
+    final WritableRaster raster = Raster.createWritableRaster(sampleModel, dataBuffer, null);
+
+    return new BufferedImage(BINARY_COLOR_MODEL, raster, false, null);
+  }
+
   /**
    * Returns the specified rectangle area of the bitmap.
    * 
@@ -220,6 +391,16 @@ public class Bitmaps {
    * @return A {@code Bitmap} that represents the requested image section.
    */
   public static Bitmap extract(final Rectangle roi, final Bitmap src) {
+    final int[][] runs = getRuns(src);
+    if (runs != null) {
+      return extractRuns(roi, runs);
+    }
+
+    final TiledBitmap tiled = getTiled(src);
+    if (tiled != null) {
+      return extractTiles(roi, tiled);
+    }
+
     final Bitmap dst = new Bitmap(roi.width, roi.height);
 
     final int upShift = roi.x & 0x07;
@@ -260,11 +441,78 @@ public class Bitmaps {
     return dst;
   }
 
+  /**
+   * Like {@link #extract(Rectangle, Bitmap)}, but for the black runs of a {@link RunLengthBitmap}.
+   * The runs within the region are moved to the origin, so the result is a
+   * {@link RunLengthBitmap} as well.
+   */
+  private static Bitmap extractRuns(final Rectangle roi, final int[][] runs) {
+    final RunLengthBitmap dst = new RunLengthBitmap(roi.width, roi.height);
+
+    int[] changingElements = new int[0];
+    for (int y = 0; y < roi.height; y++) {
+      final int[] line = runs[roi.y + y];
+      if (changingElements.length < line.length) {
+        changingElements = new int[line.length];
+      }
+
+      // The runs are pairs of changing elements already, starting at the end of a white run
+      int count = 0;
+      for (int i = 0; i < line.length && line[i] < roi.x + roi.width; i += 2) {
+        if (line[i + 1] > roi.x) {
+          changingElements[count++] = Math.max(line[i] - roi.x, 0);
+          changingElements[count++] = Math.min(line[i + 1] - roi.x, roi.width);
+        }
+      }
+
+      if (count > 0) {
+        dst.setLine(y, changingElements, count);
+      }
+    }
+
+    return dst;
+  }
+
+  /**
+   * Like {@link #extract(Rectangle, Bitmap)}, but for a {@link TiledBitmap}: the part of each tile
+   * within the region is extracted and combined with the result. Untouched white tiles are
+   * skipped.
+   */
+  private static Bitmap extractTiles(final Rectangle roi, final TiledBitmap src) {
+    final Bitmap dst = new Bitmap(roi.width, roi.height);
+    if (roi.isEmpty()) {
+      return dst;
+    }
+
+    final int tileWidth = src.getTileWidth();
+    final int tileHeight = src.getTileHeight();
+    final int lastRow = (roi.y + roi.height - 1) / tileHeight;
+    final int lastColumn = (roi.x + roi.width - 1) / tileWidth;
+
+    for (int row = roi.y / tileHeight; row <= lastRow; row++) {
+      for (int column = roi.x / tileWidth; column <= lastColumn; column++) {
+        if (src.getDefaultPixel() == 0 && src.isDefaultTile(column, row)) {
+          continue;
+        }
+
+        final Rectangle part = roi.intersection(new Rectangle(column * tileWidth, row * tileHeight, tileWidth,
+            tileHeight));
+        final Rectangle partInTile = new Rectangle(part);
+        partInTile.translate(-column * tileWidth, -row * tileHeight);
+
+        blit(extract(partInTile, src.getTile(column, row)), dst, part.x - roi.x, part.y - roi.y,
+            CombinationOperator.OR);
+      }
+    }
+
+    return dst;
+  }
+
   private static void copyLine(Bitmap src, Bitmap dst, int sourceUpShift, int sourceDownShift, int padding,
       int firstSourceByteOfLine, int lastSourceByteOfLine, boolean usePadding, int sourceOffset, int targetOffset) {
     for (int x = firstSourceByteOfLine; x < lastSourceByteOfLine; x++) {
 
-      if (sourceOffset + 1 < src.getByteArray().length) {
+      if (sourceOffset + 1 < src.getRowStride() * src.getHeight()) {
         final boolean isLastByte = x + 1 == lastSourceByteOfLine;
         byte value = (byte) (src.getByte(sourceOffset++) << sourceUpShift | (src.getByte(sourceOffset) & 0xff) >>> sourceDownShift);
 
@@ -407,6 +655,22 @@ public class Bitmaps {
    */
   public static void blit(Bitmap src, Bitmap dst, int x, int y, CombinationOperator combinationOperator) {
 
+    final TiledBitmap tiled = getTiled(dst);
+    if (tiled != null) {
+      tiled.blit(src, x, y, combinationOperator);
+      return;
+    }
+
+    final int[][] runs = getRuns(src);
+    if (runs != null) {
+      if (x >= 0 && y >= 0 && x + src.getWidth() <= dst.getWidth() && y + runs.length <= dst.getHeight()) {
+        blitRuns(runs, src.getWidth(), dst, x, y, combinationOperator);
+        return;
+      }
+      // The clipping below is kept as it is, so clipped runs are blitted as packed pixels.
+      src = packRuns(runs, src.getWidth());
+    }
+
     int startLine = 0;
     int srcStartIdx = 0;
     int srcEndIdx = (src.getRowStride() - 1);
@@ -441,85 +705,447 @@ public class Bitmaps {
 
     final int lastLine = Math.min(src.getHeight(), startLine + dst.getHeight());
 
+    final Source source = new Source(src);
     if (!useShift) {
-      blitUnshifted(src, dst, startLine, lastLine, dstStartIdx, srcStartIdx, srcEndIdx, combinationOperator);
+      blitUnshifted(source, dst, startLine, lastLine, dstStartIdx, srcStartIdx, srcEndIdx, combinationOperator);
     } else if (specialCase) {
-      blitSpecialShifted(src, dst, startLine, lastLine, dstStartIdx, srcStartIdx, srcEndIdx, toShift, shiftVal1,
+      blitSpecialShifted(source, dst, startLine, lastLine, dstStartIdx, srcStartIdx, srcEndIdx, toShift, shiftVal1,
           shiftVal2, combinationOperator);
     } else {
-      blitShifted(src, dst, startLine, lastLine, dstStartIdx, srcStartIdx, srcEndIdx, toShift, shiftVal1, shiftVal2,
-          combinationOperator, padding);
+      blitShifted(source, dst, startLine, lastLine, dstStartIdx, srcStartIdx, srcEndIdx, toShift, shiftVal1,
+          shiftVal2, combinationOperator, padding);
     }
   }
 
-  private static void blitUnshifted(Bitmap src, Bitmap dst, int startLine, int lastLine, int dstStartIdx,
-      int srcStartIdx, int srcEndIdx, CombinationOperator op) {
+  /**
+   * The bytes of a bitmap to blit, read from an array at an offset with the bitmap's row stride.
+   * This is the bitmap's byte array or, for a {@link SubBitmap} that is still a view, the array it
+   * refers to in place (e.g. a symbol arena). Only views with a bit offset have their bytes
+   * composed line by line, so that the region is never copied as a whole.
+   */
+  private static final class Source {
+    private final SubBitmap view;
+    private final int rowStride;
+    private final int offset;
+    private final int length;
+
+    /** The array holding the bytes of the last {@link #fetch(int, int)}. */
+    private byte[] array;
+
+    Source(Bitmap bitmap) {
+      this.rowStride = bitmap.getRowStride();
+      this.length = rowStride * bitmap.getHeight();
+
+      final SubBitmap subBitmap = bitmap instanceof SubBitmap && !((SubBitmap) bitmap).isDetached()
+          ? (SubBitmap) bitmap : null;
+      if (null != subBitmap && null != subBitmap.getAlignedData()) {
+        view = null;
+        array = subBitmap.getAlignedData();
+        offset = subBitmap.getAlignedOffset();
+      } else if (null != subBitmap) {
+        view = subBitmap;
+        offset = 0;
+      } else {
+        view = null;
+        array = bitmap.getByteArray();
+        offset = 0;
+      }
+    }
 
-    for (int dstLine = startLine; dstLine < lastLine; dstLine++, dstStartIdx += dst.getRowStride(), srcStartIdx += src.getRowStride(), srcEndIdx += src.getRowStride()) {
-      int dstIdx = dstStartIdx;
+    /**
+     * Makes the bytes from {@code start} to {@code end} (inclusive) available in {@link #array}.
+     * 
+     * @return The index of the byte {@code start} in {@link #array}.
+     */
+    int fetch(int start, int end) {
+      if (end < start) {
+        return offset + start;
+      }
 
-      // Go through the bytes in a line of the Symbol
-      for (int srcIdx = srcStartIdx; srcIdx <= srcEndIdx; srcIdx++) {
-        byte oldByte = dst.getByte(dstIdx);
-        byte newByte = src.getByte(srcIdx);
-        dst.setByte(dstIdx++, Bitmaps.combineBytes(oldByte, newByte, op));
+      if (view == null) {
+        // The array may hold other bitmaps' bytes, too, so don't rely on its bounds
+        if (start < 0 || end >= length)
+          throw new IndexOutOfBoundsException("start: " + start + ", end: " + end);
+        return offset + start;
       }
+
+      final int length = end - start + 1;
+      if (array == null || array.length < length) {
+        array = new byte[Math.max(length, rowStride)];
+      }
+      view.getBytes(start, array, 0, length);
+      return 0;
     }
   }
 
-  private static void blitSpecialShifted(Bitmap src, Bitmap dst, int startLine, int lastLine, int dstStartIdx,
-      int srcStartIdx, int srcEndIdx, int toShift, int shiftVal1, int shiftVal2, CombinationOperator op) {
+  /**
+   * Like {@link #blit(Bitmap, Bitmap, int, int, CombinationOperator)}, but for the black runs of a
+   * {@link RunLengthBitmap} that lies completely inside {@code dst}. Only the pixels the operator
+   * may change are touched: OR sets and XOR inverts the black runs, AND clears and XNOR inverts the
+   * white runs in between, REPLACE clears the line and sets the black runs.
+   * <p>
+   * The packed blit combines whole bytes, so AND, XNOR and REPLACE also treat the pixels before
+   * and after the source in its first and last byte as white source pixels. The span is widened to
+   * these bytes to give the same result.
+   */
+  private static void blitRuns(int[][] runs, int srcWidth, Bitmap dst, int x, int y, CombinationOperator op) {
+    if (srcWidth == 0) {
+      return;
+    }
 
-    for (int dstLine = startLine; dstLine < lastLine; dstLine++, dstStartIdx += dst.getRowStride(), srcStartIdx += src.getRowStride(), srcEndIdx += src.getRowStride()) {
-      short register = 0;
-      int dstIdx = dstStartIdx;
+    final boolean widen = op != CombinationOperator.OR && op != CombinationOperator.XOR;
+    final int minX = widen ? x & ~7 : x;
+    final int maxX = widen ? (x + srcWidth + 7) & ~7 : x + srcWidth;
+
+    final byte[] dstData = dst.getByteArray();
+
+    for (int line = 0, lineStart = y * dst.getRowStride(); line < runs.length; line++, lineStart += dst
+        .getRowStride()) {
+      final int[] r = runs[line];
+
+      switch (op){
+        case OR :
+          combineBlackRuns(r, dstData, lineStart, x, minX, maxX, RUN_SET);
+          break;
+        case AND :
+          combineWhiteRuns(r, dstData, lineStart, x, minX, maxX, RUN_CLEAR);
+          break;
+        case XOR :
+          combineBlackRuns(r, dstData, lineStart, x, minX, maxX, RUN_INVERT);
+          break;
+        case XNOR :
+          combineWhiteRuns(r, dstData, lineStart, x, minX, maxX, RUN_INVERT);
+          break;
+        case REPLACE :
+        default :
+          combineRun(dstData, lineStart, minX, maxX, RUN_CLEAR);
+          combineBlackRuns(r, dstData, lineStart, x, minX, maxX, RUN_SET);
+          break;
+      }
+    }
+  }
 
-      // Go through the bytes in a line of the Symbol
-      for (int srcIdx = srcStartIdx; srcIdx <= srcEndIdx; srcIdx++) {
-        byte oldByte = dst.getByte(dstIdx);
-        register = (short) ((register | src.getByte(srcIdx) & 0xff) << shiftVal2);
-        byte newByte = (byte) (register >> 8);
+  /** Returns a new bitmap with the black runs as packed pixels. */
+  private static Bitmap packRuns(int[][] runs, int width) {
+    final Bitmap packed = new Bitmap(width, runs.length);
+    final byte[] data = packed.getByteArray();
+    for (int line = 0, lineStart = 0; line < runs.length; line++, lineStart += packed.getRowStride()) {
+      final int[] r = runs[line];
+      for (int i = 0; i < r.length; i += 2) {
+        fillRun(data, lineStart, r[i], r[i + 1]);
+      }
+    }
+    return packed;
+  }
 
-        if (srcIdx == srcEndIdx) {
-          newByte = unpad(toShift, newByte);
+  private static void combineBlackRuns(int[] runs, byte[] data, int lineStart, int x, int minX, int maxX, int action) {
+    for (int i = 0; i < runs.length && runs[i] + x < maxX; i += 2) {
+      combineRun(data, lineStart, Math.max(runs[i] + x, minX), Math.min(runs[i + 1] + x, maxX), action);
+    }
+  }
+
+  private static void combineWhiteRuns(int[] runs, byte[] data, int lineStart, int x, int minX, int maxX, int action) {
+    int start = minX;
+    for (int i = 0; i < runs.length && start < maxX; i += 2) {
+      combineRun(data, lineStart, Math.max(start, minX), Math.min(runs[i] + x, maxX), action);
+      start = runs[i + 1] + x;
+    }
+    combineRun(data, lineStart, Math.max(start, minX), maxX, action);
+  }
+
+  /** Actions of {@link #combineRun(byte[], int, int, int, int)}. */
+  private static final int RUN_SET = 0;
+  private static final int RUN_CLEAR = 1;
+  private static final int RUN_INVERT = 2;
+
+  /**
+   * Sets the pixels of a run in a line of packed pixels to black.
+   * 
+   * @param data - The packed pixels.
+   * @param lineStart - The index of the first byte of the line.
+   * @param start - The x coordinate of the first pixel of the run.
+   * @param end - The x coordinate after the last pixel of the run.
+   */
+  public static void fillRun(byte[] data, int lineStart, int start, int end) {
+    combineRun(data, lineStart, start, end, RUN_SET);
+  }
+
+  /**
+   * Sets, clears or inverts the pixels from {@code start} (inclusive) to {@code end} (exclusive) of
+   * the line beginning at {@code lineStart}. The partial bytes at both ends are masked, the bytes
+   * in between are processed as a whole.
+   */
+  private static void combineRun(byte[] data, int lineStart, int start, int end, int action) {
+    if (end <= start) {
+      return;
+    }
+
+    final int first = lineStart + (start >> 3);
+    final int last = lineStart + ((end - 1) >> 3);
+    final int firstMask = 0xff >>> (start & 7);
+    final int lastMask = (0xff << (7 - ((end - 1) & 7))) & 0xff;
+
+    if (first == last) {
+      combineMasked(data, first, firstMask & lastMask, action);
+      return;
+    }
+
+    combineMasked(data, first, firstMask, action);
+    switch (action){
+      case RUN_SET :
+        Arrays.fill(data, first + 1, last, (byte) 0xff);
+        break;
+      case RUN_CLEAR :
+        Arrays.fill(data, first + 1, last, (byte) 0);
+        break;
+      default :
+        for (int i = first + 1; i < last; i++) {
+          data[i] = (byte) ~data[i];
         }
+        break;
+    }
+    combineMasked(data, last, lastMask, action);
+  }
+
+  private static void combineMasked(byte[] data, int index, int mask, int action) {
+    switch (action){
+      case RUN_SET :
+        data[index] |= mask;
+        break;
+      case RUN_CLEAR :
+        data[index] &= ~mask;
+        break;
+      default :
+        data[index] ^= mask;
+        break;
+    }
+  }
+
+  private static void blitUnshifted(Source src, Bitmap dst, int startLine, int lastLine, int dstStartIdx,
+      int srcStartIdx, int srcEndIdx, CombinationOperator op) {
+
+    final byte[] dstData = dst.getByteArray();
+
+    for (int dstLine = startLine; dstLine < lastLine; dstLine++, dstStartIdx += dst.getRowStride(), srcStartIdx += src.rowStride, srcEndIdx += src.rowStride) {
+      final int srcIdx = src.fetch(srcStartIdx, srcEndIdx);
+      combine(src.array, srcIdx, dstData, dstStartIdx, srcEndIdx - srcStartIdx + 1, op);
+    }
+  }
+
+  private static void blitSpecialShifted(Source src, Bitmap dst, int startLine, int lastLine, int dstStartIdx,
+      int srcStartIdx, int srcEndIdx, int toShift, int shiftVal1, int shiftVal2, CombinationOperator op) {
+
+    final byte[] dstData = dst.getByteArray();
 
-        dst.setByte(dstIdx++, Bitmaps.combineBytes(oldByte, newByte, op));
-        register <<= shiftVal1;
+    for (int dstLine = startLine; dstLine < lastLine; dstLine++, dstStartIdx += dst.getRowStride(), srcStartIdx += src.rowStride, srcEndIdx += src.rowStride) {
+      if (srcEndIdx < srcStartIdx) {
+        continue;
       }
+
+      final int srcIdx = src.fetch(srcStartIdx, srcEndIdx);
+      final int srcLastIdx = srcIdx + srcEndIdx - srcStartIdx;
+      final byte[] srcData = src.array;
+
+      // All bytes but the last one of a line of the symbol
+      combineShifted(srcData, srcIdx, dstData, dstStartIdx, srcEndIdx - srcStartIdx, shiftVal1, shiftVal2, op);
+
+      final int previous = srcEndIdx > srcStartIdx ? srcData[srcLastIdx - 1] : 0;
+      final byte newByte = unpad(toShift, shiftedByte(previous, srcData[srcLastIdx], shiftVal1, shiftVal2));
+
+      final int dstIdx = dstStartIdx + srcEndIdx - srcStartIdx;
+      dstData[dstIdx] = combineBytes(dstData[dstIdx], newByte, op);
     }
   }
 
-  private static void blitShifted(Bitmap src, Bitmap dst, int startLine, int lastLine, int dstStartIdx,
+  private static void blitShifted(Source src, Bitmap dst, int startLine, int lastLine, int dstStartIdx,
       int srcStartIdx, int srcEndIdx, int toShift, int shiftVal1, int shiftVal2, CombinationOperator op, int padding) {
 
-    for (int dstLine = startLine; dstLine < lastLine; dstLine++, dstStartIdx += dst.getRowStride(), srcStartIdx += src.getRowStride(), srcEndIdx += src.getRowStride()) {
-      short register = 0;
-      int dstIdx = dstStartIdx;
+    final byte[] dstData = dst.getByteArray();
 
-      // Go through the bytes in a line of the symbol
-      for (int srcIdx = srcStartIdx; srcIdx <= srcEndIdx; srcIdx++) {
-        byte oldByte = dst.getByte(dstIdx);
-        register = (short) ((register | src.getByte(srcIdx) & 0xff) << shiftVal2);
+    for (int dstLine = startLine; dstLine < lastLine; dstLine++, dstStartIdx += dst.getRowStride(), srcStartIdx += src.rowStride, srcEndIdx += src.rowStride) {
+      if (srcEndIdx < srcStartIdx) {
+        continue;
+      }
 
-        byte newByte = (byte) (register >> 8);
-        dst.setByte(dstIdx++, Bitmaps.combineBytes(oldByte, newByte, op));
+      final int srcIdx = src.fetch(srcStartIdx, srcEndIdx);
+      final byte[] srcData = src.array;
 
-        register <<= shiftVal1;
+      // All bytes of a line of the symbol
+      combineShifted(srcData, srcIdx, dstData, dstStartIdx, srcEndIdx - srcStartIdx + 1, shiftVal1, shiftVal2, op);
 
-        if (srcIdx == srcEndIdx) {
-          newByte = (byte) (register >> (8 - shiftVal2));
+      // The remaining bits of the last byte spill over into the next byte of the target
+      byte newByte = (byte) (srcData[srcIdx + srcEndIdx - srcStartIdx] << shiftVal2);
 
-          if (padding != 0) {
-            newByte = unpad(8 + toShift, newByte);
-          }
+      if (padding != 0) {
+        newByte = unpad(8 + toShift, newByte);
+      }
+
+      final int dstIdx = dstStartIdx + srcEndIdx - srcStartIdx + 1;
+      dstData[dstIdx] = combineBytes(dstData[dstIdx], newByte, op);
+    }
+  }
+
+  /**
+   * Returns a byte of a line that is shifted to the right by {@code shiftVal1} bits, where
+   * {@code shiftVal2} is {@code 8 - shiftVal1}.
+   * 
+   * @param previous - The source byte in front of {@code current}, {@code 0} at the line start.
+   * @param current - The source byte.
+   */
+  private static byte shiftedByte(int previous, int current, int shiftVal1, int shiftVal2) {
+    return (byte) ((previous << shiftVal2) | ((current & 0xff) >> shiftVal1));
+  }
+
+  /** Runs of at least this many bytes are combined eight bytes at a time. */
+  private static final int MIN_WORD_RUN = 16;
+
+  /**
+   * Combines a run of source bytes with the target bytes using the given combination operator.
+   * There is a separate loop for every operator. As all operators work bit by bit, long runs are
+   * combined eight bytes at a time.
+   */
+  private static void combine(byte[] src, int srcIdx, byte[] dst, int dstIdx, int length, CombinationOperator op) {
+    if (length <= 0) {
+      return;
+    }
+
+    if (op == CombinationOperator.REPLACE) {
+      // Old value is replaced by new value.
+      System.arraycopy(src, srcIdx, dst, dstIdx, length);
+      return;
+    }
 
-          oldByte = dst.getByte(dstIdx);
-          dst.setByte(dstIdx, Bitmaps.combineBytes(oldByte, newByte, op));
+    int wordEnd = srcIdx;
+    if (length >= MIN_WORD_RUN) {
+      wordEnd += length & ~7;
+    }
+    final int srcEnd = srcIdx + length;
+
+    final ByteBuffer srcWords = wordEnd > srcIdx ? ByteBuffer.wrap(src) : null;
+    final ByteBuffer dstWords = wordEnd > srcIdx ? ByteBuffer.wrap(dst) : null;
+
+    switch (op){
+      case OR :
+        for (; srcIdx < wordEnd; srcIdx += 8, dstIdx += 8) {
+          dstWords.putLong(dstIdx, dstWords.getLong(dstIdx) | srcWords.getLong(srcIdx));
         }
-      }
+        for (; srcIdx < srcEnd; srcIdx++, dstIdx++) {
+          dst[dstIdx] |= src[srcIdx];
+        }
+        break;
+      case AND :
+        for (; srcIdx < wordEnd; srcIdx += 8, dstIdx += 8) {
+          dstWords.putLong(dstIdx, dstWords.getLong(dstIdx) & srcWords.getLong(srcIdx));
+        }
+        for (; srcIdx < srcEnd; srcIdx++, dstIdx++) {
+          dst[dstIdx] &= src[srcIdx];
+        }
+        break;
+      case XOR :
+        for (; srcIdx < wordEnd; srcIdx += 8, dstIdx += 8) {
+          dstWords.putLong(dstIdx, dstWords.getLong(dstIdx) ^ srcWords.getLong(srcIdx));
+        }
+        for (; srcIdx < srcEnd; srcIdx++, dstIdx++) {
+          dst[dstIdx] ^= src[srcIdx];
+        }
+        break;
+      case XNOR :
+      default :
+        for (; srcIdx < wordEnd; srcIdx += 8, dstIdx += 8) {
+          dstWords.putLong(dstIdx, ~(dstWords.getLong(dstIdx) ^ srcWords.getLong(srcIdx)));
+        }
+        for (; srcIdx < srcEnd; srcIdx++, dstIdx++) {
+          dst[dstIdx] = (byte) ~(dst[dstIdx] ^ src[srcIdx]);
+        }
+        break;
     }
   }
 
+  /**
+   * Like {@link #combine(byte[], int, byte[], int, int, CombinationOperator)}, but the source run
+   * is shifted to the right by {@code shiftVal1} bits first, i.e. the first target byte receives
+   * the upper bits of the first source byte only.
+   */
+  private static void combineShifted(byte[] src, int srcIdx, byte[] dst, int dstIdx, int length, int shiftVal1,
+      int shiftVal2, CombinationOperator op) {
+    if (length <= 0) {
+      return;
+    }
+
+    final int srcStart = srcIdx;
+    final int srcEnd = srcIdx + length;
+
+    // Full words are read from the source, so the last word must not reach beyond the run
+    int wordEnd = srcIdx;
+    if (length >= MIN_WORD_RUN) {
+      wordEnd += length & ~7;
+    }
+
+    final ByteBuffer srcWords = wordEnd > srcIdx ? ByteBuffer.wrap(src) : null;
+    final ByteBuffer dstWords = wordEnd > srcIdx ? ByteBuffer.wrap(dst) : null;
+    final int carryShift = 56 + shiftVal2;
+
+    int previous = 0;
+    long word;
+    switch (op){
+      case OR :
+        for (; srcIdx < wordEnd; srcIdx += 8, dstIdx += 8) {
+          word = (srcWords.getLong(srcIdx) >>> shiftVal1) | ((long) previous << carryShift);
+          previous = src[srcIdx + 7] & 0xff;
+          dstWords.putLong(dstIdx, dstWords.getLong(dstIdx) | word);
+        }
+        for (; srcIdx < srcEnd; srcIdx++, dstIdx++) {
+          dst[dstIdx] |= shiftedByte(previous, src[srcIdx], shiftVal1, shiftVal2);
+          previous = src[srcIdx];
+        }
+        break;
+      case AND :
+        for (; srcIdx < wordEnd; srcIdx += 8, dstIdx += 8) {
+          word = (srcWords.getLong(srcIdx) >>> shiftVal1) | ((long) previous << carryShift);
+          previous = src[srcIdx + 7] & 0xff;
+          dstWords.putLong(dstIdx, dstWords.getLong(dstIdx) & word);
+        }
+        for (; srcIdx < srcEnd; srcIdx++, dstIdx++) {
+          dst[dstIdx] &= shiftedByte(previous, src[srcIdx], shiftVal1, shiftVal2);
+          previous = src[srcIdx];
+        }
+        break;
+      case XOR :
+        for (; srcIdx < wordEnd; srcIdx += 8, dstIdx += 8) {
+          word = (srcWords.getLong(srcIdx) >>> shiftVal1) | ((long) previous << carryShift);
+          previous = src[srcIdx + 7] & 0xff;
+          dstWords.putLong(dstIdx, dstWords.getLong(dstIdx) ^ word);
+        }
+        for (; srcIdx < srcEnd; srcIdx++, dstIdx++) {
+          dst[dstIdx] ^= shiftedByte(previous, src[srcIdx], shiftVal1, shiftVal2);
+          previous = src[srcIdx];
+        }
+        break;
+      case XNOR :
+        for (; srcIdx < wordEnd; srcIdx += 8, dstIdx += 8) {
+          word = (srcWords.getLong(srcIdx) >>> shiftVal1) | ((long) previous << carryShift);
+          previous = src[srcIdx + 7] & 0xff;
+          dstWords.putLong(dstIdx, ~(dstWords.getLong(dstIdx) ^ word));
+        }
+        for (; srcIdx < srcEnd; srcIdx++, dstIdx++) {
+          dst[dstIdx] = (byte) ~(dst[dstIdx] ^ shiftedByte(previous, src[srcIdx], shiftVal1, shiftVal2));
+          previous = src[srcIdx];
+        }
+        break;
+      case REPLACE :
+      default :
+        // Old value is replaced by new value.
+        for (; srcIdx < wordEnd; srcIdx += 8, dstIdx += 8) {
+          word = (srcWords.getLong(srcIdx) >>> shiftVal1) | ((long) previous << carryShift);
+          previous = src[srcIdx + 7] & 0xff;
+          dstWords.putLong(dstIdx, word);
+        }
+        for (; srcIdx < srcEnd; srcIdx++, dstIdx++) {
+          dst[dstIdx] = shiftedByte(previous, src[srcIdx], shiftVal1, shiftVal2);
+          previous = src[srcIdx];
+        }
+        break;
+    }
+  }
 
 }
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.image;
+
+import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
+import org.apache.pdfbox.jbig2.util.cache.InstrumentedCache;
+import org.apache.pdfbox.jbig2.util.cache.LRUCache;
+
+/**
+ * Blits bitmaps that are placed many times, like the symbols of a symbol dictionary, without
+ * shifting them again for every placement.
+ * <p>
+ * A bitmap that is placed at an x location which is not a multiple of 8 has to be shifted bitwise.
+ * This cache keeps the shifted variant of a bitmap for each of the seven possible bit offsets, so
+ * that it can be blitted byte-aligned. Blitting a variant gives exactly the same result as
+ * {@link Bitmaps#blit(Bitmap, Bitmap, int, int, CombinationOperator)} with the original bitmap.
+ * <p>
+ * Each instance belongs to one owner, e.g. a symbol dictionary, and identifies its bitmaps by their
+ * index. The variants are created on demand and kept in least-recently-used order within a memory
+ * budget of their own, so they are released together with the owner. The budget is given in bytes
+ * by the system property {@value #MAX_SIZE_PROPERTY} or to the constructor, {@code 0} disables
+ * the cache.
+ */
+public class ShiftedBitmapCache {
+
+  public static final String MAX_SIZE_PROPERTY = "org.apache.pdfbox.jbig2.shiftedSymbolCache.maxSize";
+
+  public static final long DEFAULT_MAX_SIZE = 1024 * 1024;
+
+  private final long maxSize;
+
+  /** The variants keyed by {@code index * 8 + shift}, {@code null} if the cache is disabled. */
+  private final LRUCache variants;
+
+  /**
+   * Creates a cache with the budget of the system property {@value #MAX_SIZE_PROPERTY}, or
+   * {@value #DEFAULT_MAX_SIZE} bytes if it isn't set.
+   */
+  public ShiftedBitmapCache() {
+    this(Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+  }
+
+  /**
+   * Creates a cache with the given budget.
+   * 
+   * @param maxSize - The memory budget in bytes, {@code 0} disables the cache.
+   */
+  public ShiftedBitmapCache(long maxSize) {
+    if (maxSize < 0)
+      throw new IllegalArgumentException("maxSize must not be negative");
+
+    this.maxSize = maxSize;
+    this.variants = maxSize > 0 ? new LRUCache(maxSize) : null;
+  }
+
+  /**
+   * @return The memory budget in bytes, which the variants never exceed.
+   */
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the cache holding the variants of this instance.
+   * 
+   * @return The cache of shifted variants or {@code null} if it is disabled.
+   */
+  public InstrumentedCache getCache() {
+    return variants;
+  }
+
+  /**
+   * Does the same as {@link Bitmaps#blit(Bitmap, Bitmap, int, int, CombinationOperator)}, but uses
+   * a cached shifted variant of {@code src} if it is placed completely within {@code dst}.
+   * <p>
+   * The bitmap with the given index must always have the same content.
+   * 
+   * @param index - The index of {@code src} among the bitmaps of this instance's owner.
+   * @param src - The bitmap that should be combined with {@code dst}.
+   * @param dst - The target bitmap.
+   * @param x - The x coordinate where the upper left corner of {@code src} should be positioned.
+   * @param y - The y coordinate where the upper left corner of {@code src} should be positioned.
+   * @param combinationOperator - The combination operator for combining two pixels.
+   */
+  public void blit(int index, Bitmap src, Bitmap dst, int x, int y, CombinationOperator combinationOperator) {
+    final int shift = x & 0x07;
+    final LRUCache cache = variants;
+
+    // Clipped placements are left to Bitmaps.blit, as they take other code paths there.
+    if (null == cache || shift == 0 || x < 0 || y < 0 || x + src.getWidth() > dst.getWidth()
+        || y + src.getHeight() > dst.getHeight()) {
+      Bitmaps.blit(src, dst, x, y, combinationOperator);
+    } else {
+      Bitmaps.blit(getShifted(cache, index, src, shift), dst, x - shift, y, combinationOperator);
+    }
+  }
+
+  /**
+   * Returns the given bitmap shifted to the right by {@code shift} bits. It contains exactly the
+   * bytes {@link Bitmaps#blit(Bitmap, Bitmap, int, int, CombinationOperator)} combines with the
+   * target if the original bitmap is placed at this bit offset.
+   */
+  private Bitmap getShifted(LRUCache cache, int index, Bitmap src, int shift) {
+    final Integer key = index * 8 + shift;
+
+    Bitmap shifted = (Bitmap) cache.get(key);
+    if (null == shifted) {
+      shifted = new Bitmap(src.getWidth() + shift, src.getHeight());
+      Bitmaps.blit(src, shifted, shift, 0, CombinationOperator.REPLACE);
+      cache.put(key, shifted, shifted.getMemorySize());
+    }
+
+    return shifted;
+  }
+}
@@ -0,0 +1,286 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads bits, most significant bit first, from data held by a {@link ByteBuffer} or a byte array.
+ * Up to 64 bits are kept in an accumulator which is refilled a byte at a time, so that decoders
+ * can look ahead with {@link #peekBits(int)} and consume with {@link #skipBits(int)} without
+ * touching the data for every call.
+ * <p>
+ * The data is read with absolute accesses only, its position and limit are never changed. A
+ * {@code BitReader} is not thread-safe.
+ */
+public class BitReader {
+
+  /** The amount of bits that are guaranteed to be available by a refill, unless the data ends. */
+  public static final int MAX_PEEK_BITS = 56;
+
+  /** The data the next bytes are taken from, or {@code null}. */
+  private ByteBuffer data;
+
+  /** The position of the first byte of {@link #data}. */
+  private long base;
+
+  /** The amount of bytes in {@link #data}, starting at index 0. */
+  private int limit;
+
+  /** The position of the next byte to be loaded into the accumulator. */
+  private long next;
+
+  /** The next bits, left-aligned. The bits below {@link #available} are always zero. */
+  private long accumulator;
+
+  /** The amount of valid bits in the accumulator, including zeros loaded beyond {@link #end}. */
+  private int available;
+
+  /** The position at which the data ends, known once a byte beyond it has been needed. */
+  private long end = Long.MAX_VALUE;
+
+  /**
+   * Creates a reader of the bytes from index 0 to the limit of the given buffer.
+   * 
+   * @param data - The data to be read.
+   */
+  public BitReader(ByteBuffer data) {
+    setData(data, 0, data.limit());
+  }
+
+  /**
+   * Creates a reader of a part of the given array. The array is not copied.
+   * 
+   * @param data - The array to be read.
+   * @param offset - The index of the first byte to be read.
+   * @param length - The amount of bytes to be read.
+   */
+  public BitReader(byte[] data, int offset, int length) {
+    this(ByteBuffer.wrap(data, offset, length).slice());
+  }
+
+  /**
+   * Lets the reader take the bytes from the given position on from another buffer. The bits
+   * already in the accumulator are kept.
+   * 
+   * @param data - The data, starting at index 0.
+   * @param base - The position of the byte at index 0.
+   * @param limit - The amount of bytes of the data.
+   */
+  protected final void setData(ByteBuffer data, long base, int limit) {
+    this.data = data;
+    this.base = base;
+    this.limit = limit;
+  }
+
+  /**
+   * Called if the accumulator needs a byte which is not in the current data. Subclasses may
+   * provide the data at the given position with {@link #setData(ByteBuffer, long, int)}.
+   * 
+   * @param position - The position of the byte needed.
+   * @return {@code true} if data at the position has been provided, {@code false} if the data ends.
+   * @throws IOException if the data can't be provided.
+   */
+  protected boolean fetch(long position) throws IOException {
+    return false;
+  }
+
+  private void refill() throws IOException {
+    while (available <= MAX_PEEK_BITS) {
+      if (next < end) {
+        long index = next - base;
+        if ((index < 0 || index >= limit) && !fetch(next)) {
+          end = next;
+        } else {
+          index = next - base;
+          accumulator |= (data.get((int) index) & 0xffL) << (MAX_PEEK_BITS - available);
+        }
+      }
+
+      // Beyond the end of the data zeros are loaded, so that positions stay exact
+      available += 8;
+      next++;
+    }
+  }
+
+  private int validBits() {
+    return next > end ? (int) Math.max(0, available - ((next - end) << 3)) : available;
+  }
+
+  /**
+   * Returns the next bits without consuming them. Bits beyond the end of the data are read as
+   * zeros, see {@link #hasBits(int)}.
+   * 
+   * @param numBits - The amount of bits, from 1 to {@link #MAX_PEEK_BITS}.
+   * @return The bits, right-aligned.
+   * @throws IOException if an error occurs while providing the data.
+   */
+  public long peekBits(int numBits) throws IOException {
+    if (available < numBits) {
+      refill();
+    }
+    return accumulator >>> (64 - numBits);
+  }
+
+  /**
+   * Tells whether at least the given amount of bits is left.
+   * 
+   * @param numBits - The amount of bits, up to {@link #MAX_PEEK_BITS}.
+   * @return {@code true} if the data doesn't end within these bits.
+   * @throws IOException if an error occurs while providing the data.
+   */
+  public boolean hasBits(int numBits) throws IOException {
+    if (available < numBits) {
+      refill();
+    }
+    return validBits() >= numBits;
+  }
+
+  /**
+   * Consumes the given amount of bits. The position may be moved beyond the end of the data.
+   * 
+   * @param numBits - The amount of bits to skip.
+   * @throws IOException if an error occurs while providing the data.
+   */
+  public void skipBits(long numBits) throws IOException {
+    if (numBits < available) {
+      accumulator <<= numBits;
+      available -= numBits;
+      return;
+    }
+
+    final long bits = numBits - available;
+    accumulator = 0;
+    available = 0;
+    next += bits >> 3;
+
+    final int remainder = (int) (bits & 0x07);
+    if (remainder != 0) {
+      refill();
+      accumulator <<= remainder;
+      available -= remainder;
+    }
+  }
+
+  /**
+   * Reads a single bit.
+   * 
+   * @return The bit.
+   * @throws EOFException if the data has ended.
+   * @throws IOException if an error occurs while providing the data.
+   */
+  public int readBit() throws IOException {
+    if (!hasBits(1)) {
+      throw new EOFException();
+    }
+
+    final int bit = (int) (accumulator >>> 63);
+    accumulator <<= 1;
+    available--;
+    return bit;
+  }
+
+  /**
+   * Reads the given amount of bits.
+   * 
+   * @param numBits - The amount of bits, from 0 to 64.
+   * @return The bits, right-aligned.
+   * @throws EOFException if the data ends within the bits. The position is unchanged then.
+   * @throws IOException if an error occurs while providing the data.
+   */
+  public long readBits(int numBits) throws IOException {
+    if (numBits <= 0) {
+      return 0;
+    }
+
+    if (numBits > MAX_PEEK_BITS) {
+      if (!hasBits(numBits - 32)) {
+        throw new EOFException();
+      }
+      final long high = peekBits(numBits - 32);
+      skipBits(numBits - 32);
+      if (!hasBits(32)) {
+        seek(getBitPosition() - numBits + 32);
+        throw new EOFException();
+      }
+      final long low = peekBits(32);
+      skipBits(32);
+      return (high << 32) | low;
+    }
+
+    if (!hasBits(numBits)) {
+      throw new EOFException();
+    }
+
+    final long bits = accumulator >>> (64 - numBits);
+    skipBits(numBits);
+    return bits;
+  }
+
+  /**
+   * Skips the remaining bits of the current byte, if any.
+   * 
+   * @throws IOException if an error occurs while providing the data.
+   */
+  public void alignToByte() throws IOException {
+    skipBits(available & 0x07);
+  }
+
+  /**
+   * @return The position of the byte the next bit belongs to.
+   */
+  public long getPosition() {
+    return getBitPosition() >> 3;
+  }
+
+  /**
+   * @return The offset of the next bit within its byte, from 0 (most significant) to 7.
+   */
+  public int getBitOffset() {
+    return (int) (getBitPosition() & 0x07);
+  }
+
+  private long getBitPosition() {
+    return (next << 3) - available;
+  }
+
+  /**
+   * Moves to the given bit. The accumulator is kept if the bit is already loaded into it.
+   * 
+   * @param position - The position of the byte.
+   * @param bitOffset - The offset of the bit within the byte, from 0 to 7.
+   * @throws IOException if an error occurs while providing the data.
+   */
+  public void seek(long position, int bitOffset) throws IOException {
+    seek((position << 3) + bitOffset);
+  }
+
+  private void seek(long bitPosition) throws IOException {
+    final long current = getBitPosition();
+    if (bitPosition >= current && bitPosition <= next << 3) {
+      skipBits(bitPosition - current);
+    } else {
+      next = bitPosition >> 3;
+      accumulator = 0;
+      available = 0;
+      skipBits(bitPosition & 0x07);
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.io;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * An {@link ImageInputStream} which reads data that is already in memory, held by one or more
+ * {@link ByteBuffer}s.
+ * <p>
+ * {@link SubInputStream}s created on top of this stream read their window straight from the
+ * buffers, without synchronizing on the wrapped stream. Thus segments of a document read from a
+ * {@code ByteBufferImageInputStream} can be decoded concurrently without contending for the input.
+ */
+public class ByteBufferImageInputStream extends ImageInputStreamImpl {
+
+  private final int regionSize;
+
+  private final long length;
+
+  /** The regions of the data, each but the last one {@link #regionSize} bytes long. */
+  private final ByteBuffer[] regions;
+
+  /**
+   * Creates a stream reading the given array. The array is not copied.
+   * 
+   * @param data - The data to be read.
+   */
+  public ByteBufferImageInputStream(byte[] data) {
+    this(ByteBuffer.wrap(data));
+  }
+
+  /**
+   * Creates a stream reading the remaining bytes of the given buffer. Neither the buffer's content
+   * nor its position are copied or changed.
+   * 
+   * @param data - The data to be read.
+   */
+  public ByteBufferImageInputStream(ByteBuffer data) {
+    this(new ByteBuffer[]{
+      data.slice()
+    }, Math.max(1, data.remaining()));
+  }
+
+  /**
+   * @param regions - The regions holding the data, each starting at position 0.
+   * @param regionSize - The capacity of all regions but the last one.
+   */
+  ByteBufferImageInputStream(ByteBuffer[] regions, int regionSize) {
+    this.regions = regions;
+    this.regionSize = regionSize;
+    this.length = (long) (regions.length - 1) * regionSize + regions[regions.length - 1].capacity();
+  }
+
+  @Override
+  public int read() throws IOException {
+    checkClosed();
+    bitOffset = 0;
+
+    if (streamPos >= length) {
+      return -1;
+    }
+
+    final int read = regions[(int) (streamPos / regionSize)].get((int) (streamPos % regionSize)) & 0xff;
+    streamPos++;
+
+    return read;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    checkClosed();
+    if (off < 0 || len < 0 || off + len > b.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    bitOffset = 0;
+
+    if (len == 0) {
+      return 0;
+    }
+
+    final int read = read(streamPos, b, off, len);
+    if (read > 0) {
+      streamPos += read;
+    }
+
+    return read;
+  }
+
+  /**
+   * Reads bytes at the given position without touching the position of this stream. This method
+   * may be called concurrently.
+   * 
+   * @param position - The position in the data to read from.
+   * @param b - The array to read into.
+   * @param off - The index in {@code b} of the first byte to read.
+   * @param len - The maximum amount of bytes to read.
+   * @return The amount of bytes read or {@code -1} if the position is at or beyond the end of the
+   *         data.
+   */
+  int read(long position, byte[] b, int off, int len) {
+    if (position >= length) {
+      return -1;
+    }
+
+    final int toRead = (int) Math.min(len, length - position);
+    int read = 0;
+    while (read < toRead) {
+      final ByteBuffer region = regions[(int) (position / regionSize)].duplicate();
+      ((Buffer) region).position((int) (position % regionSize));
+
+      final int n = Math.min(toRead - read, region.remaining());
+      region.get(b, off + read, n);
+      read += n;
+      position += n;
+    }
+
+    return read;
+  }
+
+  /**
+   * Returns the given part of the data as a zero-copy slice.
+   * 
+   * @param position - The position in the data at which the slice starts.
+   * @param len - The length of the slice, which must not exceed the end of the data.
+   * @return The slice or {@code null} if the part spans two regions.
+   */
+  ByteBuffer slice(long position, long len) {
+    if (len == 0) {
+      return ByteBuffer.allocate(0);
+    }
+
+    final int region = (int) (position / regionSize);
+    if (region != (position + len - 1) / regionSize) {
+      return null;
+    }
+
+    final ByteBuffer slice = regions[region].duplicate();
+    ((Buffer) slice).position((int) (position % regionSize));
+    ((Buffer) slice).limit(slice.position() + (int) len);
+    return slice.slice();
+  }
+
+  @Override
+  public long length() {
+    return length;
+  }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An {@link ByteBufferImageInputStream} which reads a file through memory mappings, so that its
+ * content is read by the operating system's page cache instead of being copied into intermediate
+ * buffers.
+ * <p>
+ * The {@link org.apache.pdfbox.jbig2.JBIG2ImageReader} uses this stream if its input is a
+ * {@link File}. {@code ImageIO.read(File)} doesn't use it, as Image I/O wraps the file into one of
+ * the JDK's file streams before it looks for a reader.
+ * <p>
+ * A single mapping can't exceed 2 GB, so larger files are mapped in several regions.
+ */
+public class MappedImageInputStream extends ByteBufferImageInputStream {
+
+  /** The size of the regions a file is mapped in. */
+  static final int REGION_SIZE = 1 << 30;
+
+  /**
+   * Maps the given file into memory.
+   * 
+   * @param file - The file to be read.
+   * @throws IOException if the file can't be opened or mapped.
+   */
+  public MappedImageInputStream(File file) throws IOException {
+    this(file, REGION_SIZE);
+  }
+
+  MappedImageInputStream(File file, int regionSize) throws IOException {
+    super(map(file, regionSize), regionSize);
+  }
+
+  private static ByteBuffer[] map(File file, int regionSize) throws IOException {
+    // A mapping stays valid after the channel it has been created with is closed
+    final RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      final FileChannel channel = raf.getChannel();
+      final long length = channel.size();
+      final ByteBuffer[] regions = new ByteBuffer[(int) Math.max(1, (length + regionSize - 1) / regionSize)];
+      for (int i = 0; i < regions.length; i++) {
+        final long position = (long) i * regionSize;
+        regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(regionSize, length - position));
+      }
+      return regions;
+    } finally {
+      raf.close();
+    }
+  }
+
+}
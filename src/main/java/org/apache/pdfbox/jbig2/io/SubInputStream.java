@@ -18,6 +18,9 @@
 package org.apache.pdfbox.jbig2.io;
 
 import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageInputStreamImpl;
@@ -27,6 +30,19 @@ import javax.imageio.stream.ImageInputStreamImpl;
  * the wrapped stream. Read accesses to the wrapped stream are synchronized, so that users of this
  * stream need to deal with synchronization against other users of the same instance, but not
  * against other users of the wrapped stream.
+ * <p>
+ * If the wrapped stream is a {@link ByteBufferImageInputStream}, e.g. a memory-mapped file, or a
+ * {@code SubInputStream} on top of one, the window is read straight from its buffers and no
+ * synchronization takes place.
+ * <p>
+ * Bits are read by a {@link BitReader} which keeps its accumulator as long as the stream position
+ * is only moved by reading bits, see {@link #getBitReader()}. Decoders which take the whole data
+ * at once can get it with {@link #getData()} or {@link #readRemainingData()}, without a copy if it
+ * is held in memory.
+ * <p>
+ * Like any {@link ImageInputStream}, a single instance must not be read by several threads at the
+ * same time. This includes instances on top of in-memory data, which share the position of the
+ * window's buffer. Separate instances of the same window can be read concurrently.
  */
 public class SubInputStream extends ImageInputStreamImpl {
 
@@ -57,6 +73,32 @@ public class SubInputStream extends ImageInputStreamImpl {
    */
   long bufferTop;
 
+  /**
+   * The in-memory data this stream is a view of, or {@code null} if the wrapped stream isn't backed
+   * by a {@link ByteBufferImageInputStream}.
+   */
+  private final ByteBufferImageInputStream dataStream;
+
+  /**
+   * The position in the in-memory data at which the window starts.
+   */
+  private final long dataOffset;
+
+  /**
+   * The position in the in-memory data at which the window ends, limited by the end of the data and
+   * of the windows of the wrapped streams.
+   */
+  private final long dataEnd;
+
+  /**
+   * The window as a zero-copy slice of the in-memory data, or {@code null} if there is no such data
+   * or the window spans two of its regions.
+   */
+  private final ByteBuffer data;
+
+  /** Reads the bits of the window, either from {@link #data} or from {@link #buffer}. */
+  private final BitReader bitReader;
+
   /**
    * Construct a new SubInputStream which provides a view of the wrapped stream.
    * 
@@ -72,6 +114,49 @@ public class SubInputStream extends ImageInputStreamImpl {
     this.wrappedStream = iis;
     this.offset = offset;
     this.length = length;
+
+    if (iis instanceof ByteBufferImageInputStream) {
+      dataStream = (ByteBufferImageInputStream) iis;
+      dataOffset = offset;
+      dataEnd = windowEnd(offset, length, dataStream.length());
+    } else if (iis instanceof SubInputStream && ((SubInputStream) iis).dataStream != null) {
+      final SubInputStream parent = (SubInputStream) iis;
+      dataStream = parent.dataStream;
+      dataOffset = parent.dataOffset + offset;
+      dataEnd = windowEnd(dataOffset, length, parent.dataEnd);
+    } else {
+      dataStream = null;
+      dataOffset = 0;
+      dataEnd = 0;
+    }
+
+    data = dataStream != null ? dataStream.slice(dataOffset, dataEnd - dataOffset) : null;
+    bitReader = data != null ? new BitReader(data) : new BufferBitReader();
+  }
+
+  /**
+   * A {@link BitReader} which takes its bytes from the buffer of the stream, refilling it on
+   * demand.
+   */
+  private final class BufferBitReader extends BitReader {
+    private final ByteBuffer bufferView = ByteBuffer.wrap(buffer);
+
+    BufferBitReader() {
+      super(ByteBuffer.allocate(0));
+    }
+
+    void update() {
+      setData(bufferView, bufferBase, (int) (bufferTop - bufferBase));
+    }
+
+    @Override
+    protected boolean fetch(long position) throws IOException {
+      return position < length && fillBuffer(position);
+    }
+  }
+
+  private static long windowEnd(long start, long length, long end) {
+    return Math.max(start, length < end - start ? start + length : end);
   }
 
   @Override
@@ -93,23 +178,166 @@ public class SubInputStream extends ImageInputStreamImpl {
     return read;
   }
 
+  /**
+   * Returns the reader of the bits of this stream, positioned at the current stream position.
+   * Reading bits from it doesn't move the stream position, which can be updated with
+   * {@link #seek(long)} and {@link #setBitOffset(int)} afterwards. The reader's accumulator is kept
+   * as long as the stream position is only moved to where the reader is.
+   * 
+   * @return The bit reader.
+   * @throws IOException if the stream is closed or an error occurs while reading from the wrapped
+   *           stream.
+   */
+  public BitReader getBitReader() throws IOException {
+    checkClosed();
+    bitReader.seek(streamPos, bitOffset);
+    return bitReader;
+  }
+
+  private void followBitReader() {
+    streamPos = bitReader.getPosition();
+    bitOffset = bitReader.getBitOffset();
+  }
+
+  /**
+   * Reads a single bit. Overridden to take the bit from the {@link BitReader} instead of reading
+   * its byte and seeking back to it as {@link ImageInputStreamImpl#readBit()} does.
+   */
+  @Override
+  public int readBit() throws IOException {
+    final int bit = getBitReader().readBit();
+    followBitReader();
+    return bit;
+  }
+
+  /**
+   * Reads up to 64 bits. Overridden to take the bits from the {@link BitReader} instead of reading
+   * byte by byte as {@link ImageInputStreamImpl#readBits(int)} does.
+   */
+  @Override
+  public long readBits(int numBits) throws IOException {
+    if (numBits < 0 || numBits > 64) {
+      throw new IllegalArgumentException("Illegal amount of bits: " + numBits);
+    }
+
+    if (bitOffset + numBits > 64) {
+      // Keep the result of ImageInputStreamImpl, which loses the leading bits in this case
+      return super.readBits(numBits);
+    }
+
+    final long bits = getBitReader().readBits(numBits);
+    followBitReader();
+    return bits;
+  }
+
+  /**
+   * Returns the next bits without moving the stream position. Together with
+   * {@link #advanceBits(int)} this lets decoders look ahead further than they finally consume.
+   * 
+   * @param numBits - The amount of bits, up to {@link BitReader#MAX_PEEK_BITS}.
+   * @return The bits, right-aligned, or {@code -1} if the stream ends within the requested bits.
+   * @throws IOException if the stream is closed or an error occurs while reading from the wrapped
+   *           stream.
+   */
+  public long peekBits(int numBits) throws IOException {
+    final BitReader reader = getBitReader();
+    return reader.hasBits(numBits) ? reader.peekBits(numBits) : -1;
+  }
+
+  /**
+   * Moves the stream position forward by the given amount of bits, typically after they have been
+   * looked at with {@link #peekBits(int)}.
+   * 
+   * @param numBits - The amount of bits to skip.
+   * @throws IOException if the stream is closed or an error occurs while reading from the wrapped
+   *           stream.
+   */
+  public void advanceBits(int numBits) throws IOException {
+    getBitReader().skipBits(numBits);
+    followBitReader();
+  }
+
+  /**
+   * Returns the window as a zero-copy, read-only buffer if it is held in memory. Every call returns
+   * a new view positioned at the start of the window, so that callers can move its position freely.
+   * 
+   * @return The data from index 0 to the limit of the buffer, or {@code null} if the wrapped stream
+   *         isn't backed by a {@link ByteBufferImageInputStream} or the window spans two of its
+   *         regions.
+   */
+  public ByteBuffer getData() {
+    if (data == null) {
+      return null;
+    }
+
+    final ByteBuffer view = data.asReadOnlyBuffer();
+    ((Buffer) view).position(0);
+    return view.slice();
+  }
+
+  /**
+   * Reads all bytes from the current position to the end of this stream like
+   * {@link #readRemainingBytes()}, but returns a zero-copy view of them if the window is held in
+   * memory, see {@link #getData()}.
+   * 
+   * @return The remaining bytes, from index 0 to the limit of the buffer.
+   * @throws IOException if an error occurs while reading from the wrapped stream.
+   */
+  public ByteBuffer readRemainingData() throws IOException {
+    checkClosed();
+
+    final ByteBuffer view = getData();
+    if (view == null) {
+      return ByteBuffer.wrap(readRemainingBytes());
+    }
+
+    if (streamPos >= view.limit()) {
+      return ByteBuffer.allocate(0);
+    }
+
+    ((Buffer) view).position((int) streamPos);
+    streamPos = view.limit();
+    return view.slice();
+  }
+
+  /**
+   * Reads all bytes from the current position to the end of this stream.
+   * 
+   * @return The remaining bytes, which might be fewer than announced by {@link #length()} if the
+   *         wrapped stream ends earlier.
+   * @throws IOException if an error occurs while reading from the wrapped stream.
+   */
+  public byte[] readRemainingBytes() throws IOException {
+    final long remaining = length - streamPos;
+    if (remaining > Integer.MAX_VALUE) {
+      throw new IOException("Remaining data is too large: " + remaining + " bytes");
+    }
+
+    final byte[] b = new byte[(int) Math.max(0, remaining)];
+    int read = 0;
+    while (read < b.length) {
+      final int r = read(b, read, b.length - read);
+      if (r <= 0) {
+        return Arrays.copyOf(b, read);
+      }
+      read += r;
+    }
+    return b;
+  }
+
   @Override
   public int read(byte[] b, int off, int len) throws IOException {
     if (streamPos >= length) {
       return -1;
     }
 
-    synchronized (wrappedStream) {
-      if (wrappedStream.getStreamPosition() != streamPos + offset) {
-        wrappedStream.seek(streamPos + offset);
-      }
-
-      int toRead = (int) Math.min(len, length - streamPos);
-      int read = wrappedStream.read(b, off, toRead);
+    int toRead = (int) Math.min(len, length - streamPos);
+    int read = readWindow(streamPos, b, off, toRead);
+    if (read > 0) {
       streamPos += read;
-
-      return read;
     }
+
+    return read;
   }
 
   /**
@@ -119,17 +347,59 @@ public class SubInputStream extends ImageInputStreamImpl {
    * @return Boolean flag. {@code true} if successful, {@code false} if not.
    */
   private boolean fillBuffer() throws IOException {
-    synchronized (wrappedStream) {
-      if (wrappedStream.getStreamPosition() != streamPos + offset) {
-        wrappedStream.seek(streamPos + offset);
+    return fillBuffer(streamPos);
+  }
+
+  private boolean fillBuffer(long position) throws IOException {
+    bufferBase = position;
+    int toRead = (int) Math.min(buffer.length, length - position);
+    int read = readWindow(position, buffer, 0, toRead);
+    bufferTop = bufferBase + Math.max(0, read);
+
+    if (bitReader instanceof BufferBitReader) {
+      ((BufferBitReader) bitReader).update();
+    }
+
+    return read > 0;
+  }
+
+  /**
+   * Reads bytes of the window, either from the in-memory data or from the wrapped stream. Reading
+   * the in-memory data moves the position of {@link #data}, thus this stream must not be read
+   * concurrently, see the class comment.
+   * 
+   * @param position - The position in the window to read from.
+   * @param b - The array to read into.
+   * @param off - The index in {@code b} of the first byte to read.
+   * @param len - The maximum amount of bytes to read.
+   * @return The amount of bytes read or {@code -1} if no byte is available at the position.
+   * @throws IOException if an error occurs while reading from the wrapped stream.
+   */
+  private int readWindow(long position, byte[] b, int off, int len) throws IOException {
+    if (data != null) {
+      if (position >= data.limit()) {
+        return -1;
+      }
+      ((Buffer) data).position((int) position);
+      final int read = Math.min(len, data.remaining());
+      data.get(b, off, read);
+      return read;
+    }
+
+    if (dataStream != null) {
+      final long remaining = dataEnd - dataOffset - position;
+      if (remaining <= 0) {
+        return -1;
       }
+      return dataStream.read(dataOffset + position, b, off, (int) Math.min(len, remaining));
+    }
 
-      bufferBase = streamPos;
-      int toRead = (int) Math.min(buffer.length, length - streamPos);
-      int read = wrappedStream.read(buffer, 0, toRead);
-      bufferTop = bufferBase + read;
+    synchronized (wrappedStream) {
+      if (wrappedStream.getStreamPosition() != position + offset) {
+        wrappedStream.seek(position + offset);
+      }
 
-      return read > 0;
+      return wrappedStream.read(b, off, len);
     }
   }
 
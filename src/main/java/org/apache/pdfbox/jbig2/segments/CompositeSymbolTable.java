@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.segments;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.decoder.huffman.FixedSizeTable;
+import org.apache.pdfbox.jbig2.decoder.huffman.HuffmanTable;
+import org.apache.pdfbox.jbig2.decoder.huffman.HuffmanTable.Code;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
+
+/**
+ * A {@link SymbolTable} that concatenates other symbol tables without copying their symbols, as
+ * done for the symbols of all referred-to symbol dictionaries of a segment.
+ * <p>
+ * A text region's table is shared with all other text regions referring to the same dictionaries
+ * (see {@link SymbolDictionary#getSymbolTable(List)}). It also keeps the symbol ID code tables
+ * that Huffman-coded regions compiled for it, as they are often the same for all of them.
+ */
+class CompositeSymbolTable implements SymbolTable {
+
+  /** The maximum amount of compiled symbol ID code tables kept per symbol table. */
+  private static final int MAX_SYMBOL_CODE_TABLES = 16;
+
+  private final SymbolTable[] tables;
+
+  /** The index of the first symbol of each table, followed by the total amount of symbols. */
+  private final int[] firstIndices;
+
+  /** Compiled symbol ID code tables keyed by their code lengths, least recently used first. */
+  private Map<CodeLengths, HuffmanTable> symbolCodeTables;
+
+  CompositeSymbolTable(List<SymbolTable> tables) {
+    this.tables = tables.toArray(new SymbolTable[tables.size()]);
+    this.firstIndices = new int[this.tables.length + 1];
+
+    for (int i = 0; i < this.tables.length; i++) {
+      firstIndices[i + 1] = firstIndices[i] + this.tables[i].size();
+    }
+  }
+
+  public int size() {
+    return firstIndices[tables.length];
+  }
+
+  public Bitmap getSymbol(int index) {
+    final int t = tableIndex(index);
+    return tables[t].getSymbol(index - firstIndices[t]);
+  }
+
+  public void blit(int index, Bitmap dst, int x, int y, CombinationOperator combinationOperator) {
+    final int t = tableIndex(index);
+    tables[t].blit(index - firstIndices[t], dst, x, y, combinationOperator);
+  }
+
+  /**
+   * Returns the symbol ID Huffman table (SBSYMCODES, see 7.4.3.1.7) for the given code lengths,
+   * compiling it only if no other region using this symbol table needed the same one before.
+   * 
+   * @param codeLengths - The code length of each symbol, {@code 0} if the symbol has no code.
+   * @return The compiled table, which may be shared by several regions.
+   */
+  synchronized HuffmanTable getSymbolCodeTable(int[] codeLengths) {
+    if (null == symbolCodeTables) {
+      symbolCodeTables = new LinkedHashMap<CodeLengths, HuffmanTable>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CodeLengths, HuffmanTable> eldest) {
+          return size() > MAX_SYMBOL_CODE_TABLES;
+        }
+      };
+    }
+
+    final CodeLengths key = new CodeLengths(codeLengths);
+    HuffmanTable table = symbolCodeTables.get(key);
+    if (null == table) {
+      final List<Code> sbSymCodes = new ArrayList<Code>();
+      for (int i = 0; i < codeLengths.length; i++) {
+        if (codeLengths[i] > 0) {
+          sbSymCodes.add(new Code(codeLengths[i], 0, i, false));
+        }
+      }
+
+      table = new FixedSizeTable(sbSymCodes);
+      symbolCodeTables.put(key, table);
+    }
+    return table;
+  }
+
+  private int tableIndex(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Symbol index: " + index + ", size: " + size());
+    }
+
+    // Only a few dictionaries are referred to, so a linear search is fine
+    int t = 0;
+    while (index >= firstIndices[t + 1]) {
+      t++;
+    }
+    return t;
+  }
+
+  private static final class CodeLengths {
+    private final int[] codeLengths;
+    private final int hashCode;
+
+    CodeLengths(int[] codeLengths) {
+      this.codeLengths = codeLengths;
+      this.hashCode = Arrays.hashCode(codeLengths);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof CodeLengths && Arrays.equals(codeLengths, ((CodeLengths) obj).codeLengths);
+    }
+  }
+}
@@ -188,7 +188,15 @@ public class GenericRefinementRegion implements Region {
       }
 
       if (arithDecoder == null) {
-        arithDecoder = new ArithmeticDecoder(subInputStream);
+        /*
+         * Refinement regions within Huffman coded dictionaries and text regions have no segment
+         * header and share the stream with the Huffman decoding, so they have to read on demand.
+         */
+        if (null != segmentHeader) {
+          arithDecoder = new ArithmeticDecoder(subInputStream.readRemainingData());
+        } else {
+          arithDecoder = new ArithmeticDecoder(subInputStream);
+        }
       }
 
       if (cx == null) {
@@ -20,6 +20,7 @@ package org.apache.pdfbox.jbig2.segments;
 import java.io.IOException;
 
 import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.RunLengthBitmap;
 import org.apache.pdfbox.jbig2.Region;
 import org.apache.pdfbox.jbig2.SegmentHeader;
 import org.apache.pdfbox.jbig2.decoder.arithmetic.ArithmeticDecoder;
@@ -72,6 +73,13 @@ public class GenericRegion implements Region {
 
   private MMRDecompressor mmrDecompressor;
 
+  /**
+   * If {@code true}, an MMR coded region is decoded into a {@link RunLengthBitmap}. Only regions of
+   * their own segment are decoded that way, as they are blitted into the page or become the page
+   * bitmap, while symbols and patterns are accessed pixel by pixel.
+   */
+  private boolean isRunLengthOutput;
+
   public GenericRegion() {
   }
 
@@ -168,7 +176,7 @@ public class GenericRegion implements Region {
         }
 
         /* 6.2.6 */
-        regionBitmap = mmrDecompressor.uncompress();
+        regionBitmap = mmrDecompressor.uncompress(isRunLengthOutput);
 
       } else {
 
@@ -182,7 +190,7 @@ public class GenericRegion implements Region {
         int ltp = 0;
 
         if (arithDecoder == null) {
-          arithDecoder = new ArithmeticDecoder(subInputStream);
+          arithDecoder = new ArithmeticDecoder(subInputStream.readRemainingData());
         }
         if (cx == null) {
           cx = new CX(65536, 1);
@@ -873,6 +881,7 @@ public class GenericRegion implements Region {
       IOException {
     this.subInputStream = sis;
     this.regionInfo = new RegionSegmentInformation(subInputStream);
+    this.isRunLengthOutput = true;
     parseHeader();
   }
 
@@ -25,7 +25,6 @@ import org.apache.pdfbox.jbig2.Bitmap;
 import org.apache.pdfbox.jbig2.Dictionary;
 import org.apache.pdfbox.jbig2.SegmentHeader;
 import org.apache.pdfbox.jbig2.err.InvalidHeaderValueException;
-import org.apache.pdfbox.jbig2.image.Bitmaps;
 import org.apache.pdfbox.jbig2.io.SubInputStream;
 import org.apache.pdfbox.jbig2.util.log.Logger;
 import org.apache.pdfbox.jbig2.util.log.LoggerFactory;
@@ -131,10 +130,13 @@ public class PatternDictionary implements Dictionary {
    * This method decodes a pattern dictionary segment and returns an array of {@link Bitmap} s. Each
    * of this {@link Bitmap}s is a pattern.<br>
    * The procedure is described in 6.7.5 (page 43).
+   * <p>
+   * Synchronized, because a dictionary may be shared by regions of pages that are decoded
+   * concurrently.
    * 
    * @return An array of {@link Bitmap}s as result of the decoding procedure.
    */
-  public ArrayList<Bitmap> getDictionary() throws IOException, InvalidHeaderValueException {
+  public synchronized ArrayList<Bitmap> getDictionary() throws IOException, InvalidHeaderValueException {
     if (null == patterns) {
 
       if (!isMMREncoded) {
@@ -164,7 +166,7 @@ public class PatternDictionary implements Dictionary {
     while (gray <= grayMax) {
       // 4) a) Retrieve a pattern bitmap by extracting it out of the collective bitmap
       final Rectangle roi = new Rectangle(hdpWidth * gray, 0, hdpWidth, hdpHeight);
-      final Bitmap patternBitmap = Bitmaps.extract(roi, collectiveBitmap);
+      final Bitmap patternBitmap = collectiveBitmap.subBitmap(roi);
       patterns.add(patternBitmap);
 
       // 4) b)
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.segments;
+
+import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.SubBitmap;
+import org.apache.pdfbox.jbig2.image.ShiftedBitmapCache;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
+
+/**
+ * The exported symbols of a symbol dictionary, stored in one contiguous array. Each symbol's
+ * packed pixels, with their own row stride, follow the previous symbol's. The symbols are located
+ * by primitive tables of offsets, widths and heights, so a dictionary costs a handful of arrays
+ * instead of an object and a byte array per symbol.
+ * <p>
+ * {@link #getSymbol(int)} returns a lightweight {@link SubBitmap} view of a symbol's bytes for each
+ * lookup. Blitting reads the arena in place, or the shifted variants of the symbols the arena
+ * keeps for placements that aren't byte-aligned.
+ */
+class SymbolArena implements SymbolTable {
+
+  /** The packed pixels of all symbols. */
+  private final byte[] data;
+
+  /** The index of the first byte of each symbol in {@link #data}. */
+  private final int[] offsets;
+
+  private final int[] widths;
+  private final int[] heights;
+
+  private final ShiftedBitmapCache shiftedSymbols = new ShiftedBitmapCache();
+
+  /**
+   * Copies the given symbols into a new arena.
+   * 
+   * @param symbols - The symbols, in the order of their indices.
+   */
+  SymbolArena(Bitmap[] symbols) {
+    offsets = new int[symbols.length];
+    widths = new int[symbols.length];
+    heights = new int[symbols.length];
+
+    long size = 0;
+    for (int i = 0; i < symbols.length; i++) {
+      offsets[i] = (int) size;
+      widths[i] = symbols[i].getWidth();
+      heights[i] = symbols[i].getHeight();
+      size += (long) symbols[i].getRowStride() * symbols[i].getHeight();
+    }
+
+    if (size > Integer.MAX_VALUE)
+      throw new IllegalArgumentException("The symbols take more than " + Integer.MAX_VALUE + " bytes");
+
+    data = new byte[(int) size];
+    for (int i = 0; i < symbols.length; i++) {
+      final Bitmap symbol = symbols[i];
+      final int length = symbol.getRowStride() * symbol.getHeight();
+      if (symbol instanceof SubBitmap) {
+        ((SubBitmap) symbol).getBytes(0, data, offsets[i], length);
+      } else {
+        System.arraycopy(symbol.getByteArray(), 0, data, offsets[i], length);
+      }
+    }
+  }
+
+  public int size() {
+    return offsets.length;
+  }
+
+  public Bitmap getSymbol(int index) {
+    return new SubBitmap(data, offsets[index], widths[index], heights[index]);
+  }
+
+  public void blit(int index, Bitmap dst, int x, int y, CombinationOperator combinationOperator) {
+    shiftedSymbols.blit(index, getSymbol(index), dst, x, y, combinationOperator);
+  }
+
+  /**
+   * Returns the memory taken by the symbols, their tables and at most by their shifted variants.
+   * The size doesn't change as variants are created, so that a cached arena keeps its size.
+   * 
+   * @return The memory size in bytes.
+   */
+  int getMemorySize() {
+    // A variant has at most one byte per line more than its symbol
+    long variantSize = data.length;
+    for (int height : heights) {
+      variantSize += height;
+    }
+    variantSize = Math.min(7 * variantSize, shiftedSymbols.getMaxSize());
+
+    return (int) Math.min(Integer.MAX_VALUE, data.length + 12L * offsets.length + variantSize);
+  }
+}
@@ -20,6 +20,10 @@ package org.apache.pdfbox.jbig2.segments;
 import java.awt.Rectangle;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.pdfbox.jbig2.Bitmap;
 import org.apache.pdfbox.jbig2.Dictionary;
@@ -29,13 +33,17 @@ import org.apache.pdfbox.jbig2.SegmentHeader;
 import org.apache.pdfbox.jbig2.decoder.arithmetic.ArithmeticDecoder;
 import org.apache.pdfbox.jbig2.decoder.arithmetic.ArithmeticIntegerDecoder;
 import org.apache.pdfbox.jbig2.decoder.arithmetic.CX;
-import org.apache.pdfbox.jbig2.decoder.huffman.EncodedTable;
 import org.apache.pdfbox.jbig2.decoder.huffman.HuffmanTable;
 import org.apache.pdfbox.jbig2.decoder.huffman.StandardTables;
 import org.apache.pdfbox.jbig2.err.IntegerMaxValueException;
 import org.apache.pdfbox.jbig2.err.InvalidHeaderValueException;
 import org.apache.pdfbox.jbig2.image.Bitmaps;
 import org.apache.pdfbox.jbig2.io.SubInputStream;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
+import org.apache.pdfbox.jbig2.util.ContentHash;
+import org.apache.pdfbox.jbig2.util.cache.Cache;
+import org.apache.pdfbox.jbig2.util.cache.DictionaryCache;
+import org.apache.pdfbox.jbig2.util.cache.InstrumentedCache;
 import org.apache.pdfbox.jbig2.util.log.Logger;
 import org.apache.pdfbox.jbig2.util.log.LoggerFactory;
 
@@ -78,7 +86,7 @@ public class SymbolDictionary implements Dictionary {
   /** Further parameters */
   private SegmentHeader segmentHeader;
   private int amountOfImportedSymbolss;
-  private ArrayList<Bitmap> importSymbols;
+  private SymbolTable importSymbols;
   private int amountOfDecodedSymbols;
   private Bitmap[] newSymbols;
 
@@ -88,9 +96,18 @@ public class SymbolDictionary implements Dictionary {
   private HuffmanTable bmSizeTable;
   private HuffmanTable aggInstTable;
 
-  /** Return value of that segment */
-  private ArrayList<Bitmap> exportSymbols;
-  private ArrayList<Bitmap> sbSymbols;
+  /**
+   * Return value of that segment: the exported symbols as handed to text regions and other
+   * dictionaries. Shared by all segments that refer to this dictionary.
+   */
+  private SymbolArena exportSymbols;
+  private SymbolTable sbSymbols;
+
+  /**
+   * The symbol tables of text regions whose last referred-to dictionary is this one, keyed by all
+   * their referred-to dictionaries. See {@link #getSymbolTable(List)}.
+   */
+  private Map<List<SymbolDictionary>, CompositeSymbolTable> referringSymbolTables;
 
   private ArithmeticDecoder arithmeticDecoder;
   private ArithmeticIntegerDecoder iDecoder;
@@ -238,7 +255,7 @@ public class SymbolDictionary implements Dictionary {
     if (segmentHeader.getRtSegments() != null) {
       retrieveImportSymbols();
     } else {
-      importSymbols = new ArrayList<Bitmap>();
+      importSymbols = new CompositeSymbolTable(Collections.<SymbolTable> emptyList());
     }
   }
 
@@ -312,13 +329,42 @@ public class SymbolDictionary implements Dictionary {
   }
 
   /**
-   * 6.5.5 Decoding the symbol dictionary
+   * Returns a copy of the exported symbols. Decoders should use {@link #getSymbolTable()} instead.
    * 
    * @return List of decoded symbol bitmaps as an <code>ArrayList</code>
    */
   public ArrayList<Bitmap> getDictionary() throws IOException, IntegerMaxValueException, InvalidHeaderValueException {
+    final SymbolTable symbolTable = getSymbolTable();
+    final ArrayList<Bitmap> dictionary = new ArrayList<Bitmap>(symbolTable.size());
+    for (int i = 0; i < symbolTable.size(); i++) {
+      dictionary.add(symbolTable.getSymbol(i));
+    }
+    return dictionary;
+  }
+
+  /**
+   * 6.5.5 Decoding the symbol dictionary
+   * <p>
+   * Synchronized, because a dictionary may be shared by regions of pages that are decoded
+   * concurrently.
+   * 
+   * @return The exported symbols as a {@link SymbolTable}.
+   */
+  public synchronized SymbolTable getSymbolTable() throws IOException, IntegerMaxValueException,
+      InvalidHeaderValueException {
     long timestamp = System.currentTimeMillis();
+
+    final Cache dictionaryCache = getDictionaryCache();
+    ContentHash cacheKey = null;
+    if (null == exportSymbols && null != dictionaryCache && null != segmentHeader) {
+      cacheKey = segmentHeader.getGlobalContentHash();
+      if (null != cacheKey) {
+        exportSymbols = (SymbolArena) dictionaryCache.get(cacheKey);
+      }
+    }
+
     if (null == exportSymbols) {
+      final long loadTimestamp = System.nanoTime();
 
       if (useRefinementAggregation)
         sbSymCodeLen = getSbSymCodeLen();
@@ -411,6 +457,10 @@ public class SymbolDictionary implements Dictionary {
 
       /* 6.5.10 6) - 8) */
       setExportedSymbols(exFlags);
+
+      if (null != cacheKey) {
+        putIntoDictionaryCache(dictionaryCache, cacheKey, System.nanoTime() - loadTimestamp);
+      }
     }
 
     if (JBIG2ImageReader.PERFORMANCE_TEST)
@@ -421,6 +471,70 @@ public class SymbolDictionary implements Dictionary {
     return exportSymbols;
   }
 
+  /**
+   * Returns the symbols of the given dictionaries as one table. All text regions that refer to the
+   * same dictionaries get the same table, so that neither the table nor the symbol ID code tables
+   * compiled for it are built again for each region.
+   * <p>
+   * The table is kept by the last of the dictionaries, which usually is the one with the shortest
+   * lifetime, e.g. a page's dictionary that follows a global one. It is released together with it.
+   * 
+   * @param dictionaries - The referred-to dictionaries in the order of their segment numbers.
+   * @return The {@link CompositeSymbolTable} of the dictionaries' exported symbols.
+   */
+  static CompositeSymbolTable getSymbolTable(final List<SymbolDictionary> dictionaries) throws IOException,
+      IntegerMaxValueException, InvalidHeaderValueException {
+    if (dictionaries.isEmpty()) {
+      return new CompositeSymbolTable(Collections.<SymbolTable> emptyList());
+    }
+
+    final SymbolDictionary owner = dictionaries.get(dictionaries.size() - 1);
+    synchronized (owner) {
+      if (null != owner.referringSymbolTables) {
+        final CompositeSymbolTable symbolTable = owner.referringSymbolTables.get(dictionaries);
+        if (null != symbolTable) {
+          return symbolTable;
+        }
+      }
+    }
+
+    // Decode outside of the owner's lock, every dictionary synchronizes its own decoding
+    final List<SymbolTable> tables = new ArrayList<SymbolTable>(dictionaries.size());
+    for (SymbolDictionary sd : dictionaries) {
+      tables.add(sd.getSymbolTable());
+    }
+
+    synchronized (owner) {
+      if (null == owner.referringSymbolTables) {
+        owner.referringSymbolTables = new HashMap<List<SymbolDictionary>, CompositeSymbolTable>();
+      }
+
+      CompositeSymbolTable symbolTable = owner.referringSymbolTables.get(dictionaries);
+      if (null == symbolTable) {
+        symbolTable = new CompositeSymbolTable(tables);
+        owner.referringSymbolTables.put(new ArrayList<SymbolDictionary>(dictionaries), symbolTable);
+      }
+      return symbolTable;
+    }
+  }
+
+  /**
+   * Returns the cache for decoded global dictionaries if it is enabled and if this dictionary may
+   * be cached. A dictionary which retains its coding contexts is never cached, because a later
+   * dictionary needs those contexts to be decoded.
+   */
+  private Cache getDictionaryCache() {
+    return isCodingContextRetained ? null : DictionaryCache.getCache();
+  }
+
+  private void putIntoDictionaryCache(final Cache dictionaryCache, final ContentHash cacheKey, final long loadTime) {
+    dictionaryCache.put(cacheKey, exportSymbols, exportSymbols.getMemorySize());
+
+    if (dictionaryCache instanceof InstrumentedCache) {
+      ((InstrumentedCache) dictionaryCache).recordLoadTime(loadTime);
+    }
+  }
+
   private void setCodingStatistics() throws IOException {
     if (cxIADT == null) {
       cxIADT = new CX(512, 1);
@@ -453,7 +567,7 @@ public class SymbolDictionary implements Dictionary {
     }
 
     if (arithmeticDecoder == null) {
-      arithmeticDecoder = new ArithmeticDecoder(subInputStream);
+      arithmeticDecoder = new ArithmeticDecoder(subInputStream.readRemainingData());
     }
 
     if (iDecoder == null) {
@@ -466,17 +580,14 @@ public class SymbolDictionary implements Dictionary {
       final int heightClassFirstSymbol, final int heightClassHeight, final int[] newSymbolsWidths)
       throws IntegerMaxValueException, InvalidHeaderValueException, IOException {
 
-    for (int i = heightClassFirstSymbol; i < amountOfDecodedSymbols; i++) {
-      int startColumn = 0;
-
-      for (int j = heightClassFirstSymbol; j <= i - 1; j++) {
-        startColumn += newSymbolsWidths[j];
-      }
+    int startColumn = 0;
 
+    for (int i = heightClassFirstSymbol; i < amountOfDecodedSymbols; i++) {
       final Rectangle roi = new Rectangle(startColumn, 0, newSymbolsWidths[i], heightClassHeight);
-      final Bitmap symbolBitmap = Bitmaps.extract(roi, heightClassCollectiveBitmap);
+      final Bitmap symbolBitmap = heightClassCollectiveBitmap.subBitmap(roi);
       newSymbols[i] = symbolBitmap;
-      sbSymbols.add(symbolBitmap);
+
+      startColumn += newSymbolsWidths[i];
     }
   }
 
@@ -583,7 +694,7 @@ public class SymbolDictionary implements Dictionary {
 
     /* 6) */
     setSymbolsArray();
-    final Bitmap ibo = sbSymbols.get(id);
+    final Bitmap ibo = sbSymbols.getSymbol(id);
     decodeNewSymbols(symbolWidth, heightClassHeight, ibo, rdx, rdy);
 
     /* 7) */
@@ -631,7 +742,6 @@ public class SymbolDictionary implements Dictionary {
       IOException {
     final Bitmap symbol = region.getRegionBitmap();
     newSymbols[amountOfDecodedSymbols] = symbol;
-    sbSymbols.add(symbol);
   }
 
   private final long decodeDifferenceWidth() throws IOException, InvalidHeaderValueException {
@@ -694,10 +804,7 @@ public class SymbolDictionary implements Dictionary {
       final int totalWidth) throws IOException {
     if (bmSize == 0) {
       final Bitmap heightClassCollectiveBitmap = new Bitmap(totalWidth, heightClassHeight);
-
-      for (int i = 0; i < heightClassCollectiveBitmap.getByteArray().length; i++) {
-        heightClassCollectiveBitmap.setByte(i, subInputStream.readByte());
-      }
+      subInputStream.readFully(heightClassCollectiveBitmap.getByteArray());
 
       return heightClassCollectiveBitmap;
     } else {
@@ -705,25 +812,36 @@ public class SymbolDictionary implements Dictionary {
         genericRegion = new GenericRegion(subInputStream);
       }
 
-      genericRegion.setParameters(true, subInputStream.getStreamPosition(), bmSize, heightClassHeight, totalWidth);
+      final long dataOffset = subInputStream.getStreamPosition();
+      genericRegion.setParameters(true, dataOffset, bmSize, heightClassHeight, totalWidth);
+
+      final Bitmap heightClassCollectiveBitmap = genericRegion.getRegionBitmap();
 
-      return genericRegion.getRegionBitmap();
+      // The MMR data has been read through a stream of its own, so skip it here
+      subInputStream.seek(dataOffset + bmSize);
+
+      return heightClassCollectiveBitmap;
     }
   }
 
   private void setExportedSymbols(int[] toExportFlags) {
-    exportSymbols = new ArrayList<Bitmap>(amountOfExportSymbolss);
+    final ArrayList<Bitmap> exported = new ArrayList<Bitmap>(amountOfExportSymbolss);
 
     for (int i = 0; i < amountOfImportedSymbolss + amountOfNewSymbolss; i++) {
 
       if (toExportFlags[i] == 1) {
         if (i < amountOfImportedSymbolss) {
-          exportSymbols.add(importSymbols.get(i));
+          exported.add(importSymbols.getSymbol(i));
         } else {
-          exportSymbols.add(newSymbols[i - amountOfImportedSymbolss]);
+          exported.add(newSymbols[i - amountOfImportedSymbolss]);
         }
       }
     }
+
+    exportSymbols = new SymbolArena(exported.toArray(new Bitmap[exported.size()]));
+
+    // The new symbols, and the collective bitmaps they may refer to, are copies in the arena now
+    newSymbols = null;
   }
 
   private int[] getToExportFlags() throws IOException, InvalidHeaderValueException {
@@ -795,27 +913,27 @@ public class SymbolDictionary implements Dictionary {
     }
 
     if (sbSymbols == null) {
-      sbSymbols = new ArrayList<Bitmap>();
-      sbSymbols.addAll(importSymbols);
+      sbSymbols = new DecodedSymbols();
     }
   }
 
   /**
-   * Concatenates symbols from all referred-to segments.
+   * Collects symbols from all referred-to segments.
    * 
    * @throws IOException
    * @throws InvalidHeaderValueException
    * @throws IntegerMaxValueException
    */
   private void retrieveImportSymbols() throws IOException, InvalidHeaderValueException, IntegerMaxValueException {
-    importSymbols = new ArrayList<Bitmap>();
+    final List<SymbolTable> tables = new ArrayList<SymbolTable>();
     for (final SegmentHeader referredToSegmentHeader : segmentHeader.getRtSegments()) {
       if (referredToSegmentHeader.getSegmentType() == 0) {
         final SymbolDictionary sd = (SymbolDictionary) referredToSegmentHeader.getSegmentData();
-        importSymbols.addAll(sd.getDictionary());
+        tables.add(sd.getSymbolTable());
         amountOfImportedSymbolss += sd.amountOfExportSymbolss;
       }
     }
+    importSymbols = new CompositeSymbolTable(tables);
   }
 
   private HuffmanTable getUserTable(final int tablePosition) throws InvalidHeaderValueException, IOException {
@@ -825,7 +943,7 @@ public class SymbolDictionary implements Dictionary {
       if (referredToSegmentHeader.getSegmentType() == 53) {
         if (tableCounter == tablePosition) {
           final Table t = (Table) referredToSegmentHeader.getSegmentData();
-          return new EncodedTable(t);
+          return t.getHuffmanTable();
         } else {
           tableCounter++;
         }
@@ -834,6 +952,32 @@ public class SymbolDictionary implements Dictionary {
     return null;
   }
 
+  /**
+   * The imported symbols followed by the new symbols decoded so far (SBSYMS, see 6.5.8.2.4), as
+   * needed for refinement/aggregate coding while this dictionary is decoded.
+   */
+  private class DecodedSymbols implements SymbolTable {
+
+    public int size() {
+      return amountOfImportedSymbolss + amountOfDecodedSymbols;
+    }
+
+    public Bitmap getSymbol(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Symbol index: " + index + ", size: " + size());
+      }
+
+      if (index < amountOfImportedSymbolss) {
+        return importSymbols.getSymbol(index);
+      }
+      return newSymbols[index - amountOfImportedSymbolss];
+    }
+
+    public void blit(int index, Bitmap dst, int x, int y, CombinationOperator combinationOperator) {
+      Bitmaps.blit(getSymbol(index), dst, x, y, combinationOperator);
+    }
+  }
+
   public void init(final SegmentHeader header, final SubInputStream sis) throws InvalidHeaderValueException,
       IntegerMaxValueException, IOException {
     this.subInputStream = sis;
@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.segments;
+
+import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.image.Bitmaps;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
+
+/**
+ * An indexed, read-only collection of symbol bitmaps, e.g. the exported symbols of a symbol
+ * dictionary or the symbols a text region refers to (SBSYMS, see 6.4.2).
+ * <p>
+ * Symbol tables are handed to their consumers instead of copies of the symbol lists, so that the
+ * symbols of a large dictionary aren't collected again for every region that uses them.
+ */
+public interface SymbolTable {
+
+  /**
+   * @return The amount of symbols in this table.
+   */
+  int size();
+
+  /**
+   * Returns the symbol with the given index. Throws an {@link IndexOutOfBoundsException} if the
+   * index is out of bound. The returned bitmap must not be modified and may be a new, lightweight
+   * view of the symbol's pixels for each call, so symbols must not be compared by identity.
+   * 
+   * @param index - The index of the symbol, starting at {@code 0}.
+   * @return The bitmap of the symbol.
+   */
+  Bitmap getSymbol(int index);
+
+  /**
+   * Combines the symbol with the given index with the target bitmap like
+   * {@link Bitmaps#blit(Bitmap, Bitmap, int, int, CombinationOperator)} does, but may use cached
+   * shifted variants of the symbol (see {@link org.apache.pdfbox.jbig2.image.ShiftedBitmapCache}).
+   * 
+   * @param index - The index of the symbol, starting at {@code 0}.
+   * @param dst - The target bitmap.
+   * @param x - The x coordinate where the upper left corner of the symbol should be positioned.
+   * @param y - The y coordinate where the upper left corner of the symbol should be positioned.
+   * @param combinationOperator - The combination operator for combining two pixels.
+   */
+  void blit(int index, Bitmap dst, int x, int y, CombinationOperator combinationOperator);
+}
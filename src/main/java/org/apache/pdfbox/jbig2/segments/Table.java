@@ -21,6 +21,8 @@ import java.io.IOException;
 
 import org.apache.pdfbox.jbig2.SegmentData;
 import org.apache.pdfbox.jbig2.SegmentHeader;
+import org.apache.pdfbox.jbig2.decoder.huffman.EncodedTable;
+import org.apache.pdfbox.jbig2.decoder.huffman.HuffmanTable;
 import org.apache.pdfbox.jbig2.err.IntegerMaxValueException;
 import org.apache.pdfbox.jbig2.err.InvalidHeaderValueException;
 import org.apache.pdfbox.jbig2.io.SubInputStream;
@@ -43,6 +45,9 @@ public class Table implements SegmentData {
   /** Code table highest value, B.2.3, page 87 */
   private int htHigh;
 
+  /** The decoder for the table lines, created on first use. */
+  private HuffmanTable huffmanTable;
+
   private void parseHeader() throws IOException, InvalidHeaderValueException, IntegerMaxValueException {
     int bit;
 
@@ -71,6 +76,20 @@ public class Table implements SegmentData {
     parseHeader();
   }
 
+  /**
+   * Returns the decoder for this table. The table lines are decoded only once, the decoder is
+   * shared by all regions and dictionaries that refer to this segment.
+   * 
+   * @return The {@link HuffmanTable} described by this segment.
+   * @throws IOException if the table lines can't be read.
+   */
+  public synchronized HuffmanTable getHuffmanTable() throws IOException {
+    if (null == huffmanTable) {
+      huffmanTable = new EncodedTable(this);
+    }
+    return huffmanTable;
+  }
+
   public int getHtOOB() {
     return htOutOfBand;
   }
@@ -20,6 +20,7 @@ package org.apache.pdfbox.jbig2.segments;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.pdfbox.jbig2.Bitmap;
@@ -29,7 +30,6 @@ import org.apache.pdfbox.jbig2.SegmentHeader;
 import org.apache.pdfbox.jbig2.decoder.arithmetic.ArithmeticDecoder;
 import org.apache.pdfbox.jbig2.decoder.arithmetic.ArithmeticIntegerDecoder;
 import org.apache.pdfbox.jbig2.decoder.arithmetic.CX;
-import org.apache.pdfbox.jbig2.decoder.huffman.EncodedTable;
 import org.apache.pdfbox.jbig2.decoder.huffman.FixedSizeTable;
 import org.apache.pdfbox.jbig2.decoder.huffman.HuffmanTable;
 import org.apache.pdfbox.jbig2.decoder.huffman.StandardTables;
@@ -88,7 +88,13 @@ public class TextRegion implements Region {
   private int amountOfSymbols;
 
   private Bitmap regionBitmap;
-  private ArrayList<Bitmap> symbols = new ArrayList<Bitmap>();
+
+  /**
+   * The symbols of the referred-to dictionaries (SBSYMS), shared with all regions that refer to the
+   * same dictionaries.
+   */
+  private CompositeSymbolTable referredSymbols = new CompositeSymbolTable(Collections.<SymbolTable> emptyList());
+  private SymbolTable symbols = referredSymbols;
 
   private ArithmeticDecoder arithmeticDecoder;
   private ArithmeticIntegerDecoder integerDecoder;
@@ -108,7 +114,7 @@ public class TextRegion implements Region {
 
   /** codeTable including a code to each symbol used in that region */
   private int symbolCodeLength;
-  private FixedSizeTable symbolCodeTable;
+  private HuffmanTable symbolCodeTable;
   private SegmentHeader segmentHeader;
 
   /** User-supplied tables * */
@@ -337,7 +343,7 @@ public class TextRegion implements Region {
       cxIARDY = new CX(512, 1);
 
     if (arithmeticDecoder == null)
-      arithmeticDecoder = new ArithmeticDecoder(subInputStream);
+      arithmeticDecoder = new ArithmeticDecoder(subInputStream.readRemainingData());
 
     if (integerDecoder == null)
       integerDecoder = new ArithmeticIntegerDecoder(arithmeticDecoder);
@@ -443,7 +449,7 @@ public class TextRegion implements Region {
         final Bitmap ib = decodeIb(r, id);
 
         /* vi) */
-        blit(ib, t);
+        blit(ib, t, r == 0 ? (int) id : -1);
 
         instanceCounter++;
       }
@@ -544,7 +550,7 @@ public class TextRegion implements Region {
     Bitmap ib;
 
     if (r == 0) {
-      ib = symbols.get((int) id);
+      ib = symbols.getSymbol((int) id);
     } else {
       /* 1) - 4) */
       final long rdw = decodeRdw();
@@ -560,7 +566,7 @@ public class TextRegion implements Region {
       }
 
       /* 6) */
-      final Bitmap ibo = symbols.get((int) id);
+      final Bitmap ibo = symbols.getSymbol((int) id);
       final int wo = ibo.getWidth();
       final int ho = ibo.getHeight();
 
@@ -765,7 +771,11 @@ public class TextRegion implements Region {
 
   }
 
-  private final void blit(Bitmap ib, long t) {
+  /**
+   * Places the symbol instance bitmap {@code ib}. If it is the unrefined symbol with the given ID,
+   * it is blitted through the symbol table, which may keep shifted variants of it.
+   */
+  private final void blit(Bitmap ib, long t, int symbolID) {
     if (isTransposed == 0 && (referenceCorner == 2 || referenceCorner == 3)) {
       currentS += ib.getWidth() - 1;
     } else if (isTransposed == 1 && (referenceCorner == 0 || referenceCorner == 2)) {
@@ -796,7 +806,11 @@ public class TextRegion implements Region {
       }
     }
 
-    Bitmaps.blit(ib, regionBitmap, (int) s, (int) t, combinationOperator);
+    if (symbolID >= 0) {
+      symbols.blit(symbolID, regionBitmap, (int) s, (int) t, combinationOperator);
+    } else {
+      Bitmaps.blit(ib, regionBitmap, (int) s, (int) t, combinationOperator);
+    }
 
     /* x) */
     if (isTransposed == 0 && (referenceCorner == 0 || referenceCorner == 1)) {
@@ -810,14 +824,17 @@ public class TextRegion implements Region {
   }
 
   private void initSymbols() throws IOException, IntegerMaxValueException, InvalidHeaderValueException {
+    final List<SymbolDictionary> dictionaries = new ArrayList<SymbolDictionary>();
     for (final SegmentHeader segment : segmentHeader.getRtSegments()) {
       if (segment.getSegmentType() == 0) {
         final SymbolDictionary sd = (SymbolDictionary) segment.getSegmentData();
 
         sd.cxIAID = cxIAID;
-        symbols.addAll(sd.getDictionary());
+        dictionaries.add(sd);
       }
     }
+    referredSymbols = SymbolDictionary.getSymbolTable(dictionaries);
+    symbols = referredSymbols;
     amountOfSymbols = symbols.size();
   }
 
@@ -828,7 +845,7 @@ public class TextRegion implements Region {
       if (referredToSegmentHeader.getSegmentType() == 53) {
         if (tableCounter == tablePosition) {
           final Table t = (Table) referredToSegmentHeader.getSegmentData();
-          return new EncodedTable(t);
+          return t.getHuffmanTable();
         } else {
           tableCounter++;
         }
@@ -857,12 +874,12 @@ public class TextRegion implements Region {
     long previousCodeLength = 0;
 
     int counter = 0;
-    final List<Code> sbSymCodes = new ArrayList<Code>();
+    int[] sbSymCodeLengths = new int[amountOfSymbols];
     while (counter < amountOfSymbols) {
       final long code = ht.decode(subInputStream);
       if (code < 32) {
         if (code > 0) {
-          sbSymCodes.add(new Code((int) code, 0, counter, false));
+          sbSymCodeLengths = setCodeLength(sbSymCodeLengths, counter, (int) code);
         }
 
         previousCodeLength = code;
@@ -884,7 +901,7 @@ public class TextRegion implements Region {
 
         for (int j = 0; j < runLength; j++) {
           if (currCodeLength > 0) {
-            sbSymCodes.add(new Code((int) currCodeLength, 0, counter, false));
+            sbSymCodeLengths = setCodeLength(sbSymCodeLengths, counter, (int) currCodeLength);
           }
           counter++;
         }
@@ -894,11 +911,23 @@ public class TextRegion implements Region {
     /* 6) - Skip over remaining bits in the last Byte read */
     subInputStream.skipBits();
 
-    /* 7) */
-    symbolCodeTable = new FixedSizeTable(sbSymCodes);
+    /* 7) - Regions referring to the same dictionaries often use the same code lengths */
+    symbolCodeTable = referredSymbols.getSymbolCodeTable(sbSymCodeLengths);
 
   }
 
+  /**
+   * Stores the code length of a symbol, growing the array if a run of code lengths exceeds the
+   * amount of symbols.
+   */
+  private static int[] setCodeLength(int[] codeLengths, int symbol, int codeLength) {
+    if (symbol >= codeLengths.length) {
+      codeLengths = Arrays.copyOf(codeLengths, symbol + 1);
+    }
+    codeLengths[symbol] = codeLength;
+    return codeLengths;
+  }
+
   public void init(SegmentHeader header, SubInputStream sis) throws InvalidHeaderValueException,
       IntegerMaxValueException, IOException {
     this.segmentHeader = header;
@@ -928,7 +957,7 @@ public class TextRegion implements Region {
       boolean isHuffmanEncoded, boolean sbRefine, int sbw, int sbh, long sbNumInstances, int sbStrips, int sbNumSyms,
       short sbDefaultPixel, short sbCombinationOperator, short transposed, short refCorner, short sbdsOffset,
       short sbHuffFS, short sbHuffDS, short sbHuffDT, short sbHuffRDWidth, short sbHuffRDHeight, short sbHuffRDX,
-      short sbHuffRDY, short sbHuffRSize, short sbrTemplate, short sbrATX[], short sbrATY[], ArrayList<Bitmap> sbSyms,
+      short sbHuffRDY, short sbHuffRSize, short sbrTemplate, short sbrATX[], short sbrATY[], SymbolTable sbSyms,
       int sbSymCodeLen) {
 
     this.arithmeticDecoder = arithmeticDecoder;
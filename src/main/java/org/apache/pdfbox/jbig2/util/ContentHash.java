@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * An immutable hash of some content, e.g. the bytes of JBIG2 segments. Two instances are equal if
+ * their hash values are equal, so instances can be used as keys for content that is identical
+ * across documents and readers.
+ */
+public final class ContentHash {
+
+  /** The algorithm used by {@link #newMessageDigest()}. */
+  public static final String ALGORITHM = "SHA-256";
+
+  private final byte[] hash;
+
+  /**
+   * @param hash - The hash value, e.g. the result of {@link MessageDigest#digest()}.
+   */
+  public ContentHash(byte[] hash) {
+    if (hash == null)
+      throw new IllegalArgumentException("hash must not be null");
+
+    this.hash = hash.clone();
+  }
+
+  /**
+   * Creates a new {@link MessageDigest} for the {@link #ALGORITHM} used for content hashes.
+   * 
+   * @return A new {@link MessageDigest} instance.
+   */
+  public static MessageDigest newMessageDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(ALGORITHM + " not available", e);
+    }
+  }
+
+  /**
+   * Feeds the given value into the digest in big-endian byte order.
+   * 
+   * @param digest - The digest to be updated.
+   * @param value - The value.
+   */
+  public static void update(MessageDigest digest, long value) {
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      digest.update((byte) (value >>> shift));
+    }
+  }
+
+  /**
+   * @return A copy of the hash value.
+   */
+  public byte[] getHash() {
+    return hash.clone();
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(hash);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof ContentHash && Arrays.equals(hash, ((ContentHash) obj).hash);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder(hash.length * 2);
+    for (byte b : hash) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+}
@@ -49,6 +49,16 @@ public class CacheFactory {
     return getCache(clsLoader != null ? clsLoader : CacheBridge.class.getClassLoader());
   }
 
+  /**
+   * Returns the statistics of the current cache.
+   * 
+   * @return The {@link CacheStatistics} or {@code null} if the cache doesn't keep any.
+   */
+  public static CacheStatistics getStatistics() {
+    final Cache cache = getCache();
+    return cache instanceof InstrumentedCache ? ((InstrumentedCache) cache).getStatistics() : null;
+  }
+
   public static void setClassLoader(ClassLoader clsLoader) {
     CacheFactory.clsLoader = clsLoader;
   }
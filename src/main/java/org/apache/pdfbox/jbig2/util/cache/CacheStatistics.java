@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.util.cache;
+
+/**
+ * Usage statistics of a {@link Cache}. The interface is also used as management interface when the
+ * statistics are registered as platform MBean.
+ */
+public interface CacheStatistics {
+
+  /**
+   * @return The amount of lookups that returned a cached value.
+   */
+  long getHitCount();
+
+  /**
+   * @return The amount of lookups that did not find a cached value.
+   */
+  long getMissCount();
+
+  /**
+   * @return The amount of values that have been put into the cache.
+   */
+  long getPutCount();
+
+  /**
+   * @return The amount of entries that have been evicted to stay within the memory budget.
+   */
+  long getEvictionCount();
+
+  /**
+   * @return The amount of entries currently held by the cache.
+   */
+  int getEntryCount();
+
+  /**
+   * @return The sum of the size estimates of all entries currently held by the cache, in bytes.
+   */
+  long getResidentBytes();
+
+  /**
+   * @return The amount of values that have been loaded (i.e. decoded) after a cache miss.
+   */
+  long getLoadCount();
+
+  /**
+   * @return The accumulated time spent loading values after cache misses, in milliseconds.
+   */
+  long getTotalLoadTime();
+
+  /**
+   * Resets all counters. The entries of the cache are not affected.
+   */
+  void reset();
+}
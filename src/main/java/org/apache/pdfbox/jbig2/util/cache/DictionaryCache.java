@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.util.cache;
+
+/**
+ * Holds the optional cache for decoded global symbol dictionaries. The dictionaries are keyed by a
+ * hash of the global segments they are decoded from, so that readers and documents which share the
+ * same globals (as is common for the images of a PDF document) decode them only once.
+ * <p>
+ * The cache is disabled by default. It is enabled by setting a memory budget in bytes, either with
+ * the system property {@value #MAX_SIZE_PROPERTY} or with {@link #setMaxSize(long)}.
+ */
+public final class DictionaryCache {
+
+  public static final String MAX_SIZE_PROPERTY = "org.apache.pdfbox.jbig2.dictionaryCache.maxSize";
+
+  private static volatile LRUCache cache = create(Long.getLong(MAX_SIZE_PROPERTY, 0));
+
+  private DictionaryCache() {
+  }
+
+  /**
+   * Returns the dictionary cache.
+   * 
+   * @return The dictionary cache or {@code null} if it is disabled.
+   */
+  public static InstrumentedCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Sets the memory budget of the dictionary cache. All currently cached dictionaries are dropped.
+   * 
+   * @param maxSize - The memory budget in bytes, {@code 0} disables the cache.
+   */
+  public static void setMaxSize(long maxSize) {
+    if (maxSize < 0)
+      throw new IllegalArgumentException("maxSize must not be negative");
+
+    cache = create(maxSize);
+  }
+
+  private static LRUCache create(long maxSize) {
+    return maxSize > 0 ? new LRUCache(maxSize) : null;
+  }
+}
@@ -15,15 +15,23 @@
  * limitations under the License.
  */
 
-package org.apache.pdfbox.jbig2.decoder.huffman;
-
-import java.io.IOException;
-
-import javax.imageio.stream.ImageInputStream;
+package org.apache.pdfbox.jbig2.util.cache;
 
 /**
- * Base class for all nodes in a huffman tree.
+ * A {@link Cache} that keeps {@link CacheStatistics} about its usage.
  */
-abstract class Node {
-  protected abstract long decode(ImageInputStream iis) throws IOException;
+public interface InstrumentedCache extends Cache {
+
+  /**
+   * @return The statistics of this cache.
+   */
+  CacheStatistics getStatistics();
+
+  /**
+   * Records the time it took to load a value after a cache miss. Callers that load and put values
+   * report this, because the cache itself does not see the loading.
+   * 
+   * @param loadTimeNanos - The load time in nanoseconds.
+   */
+  void recordLoadTime(long loadTimeNanos);
 }
@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.util.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread-safe {@link Cache} with a fixed memory budget. Entries are kept in least-recently-used
+ * order and the eldest entries are evicted as soon as the sum of their size estimates exceeds the
+ * budget. An entry whose size estimate exceeds the whole budget is not cached at all.
+ */
+public class LRUCache implements InstrumentedCache {
+
+  private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+
+  /** The memory budget in bytes. */
+  private final long maxSize;
+
+  /** The sum of the size estimates of all cached entries. */
+  private long size;
+
+  private long hitCount;
+  private long missCount;
+  private long putCount;
+  private long evictionCount;
+  private long loadCount;
+  private long loadTimeNanos;
+
+  private final CacheStatistics statistics = new Statistics();
+
+  /**
+   * Creates a cache with the given memory budget.
+   * 
+   * @param maxSize - The maximum sum of the size estimates of all entries in bytes.
+   */
+  public LRUCache(long maxSize) {
+    if (maxSize < 0)
+      throw new IllegalArgumentException("maxSize must not be negative");
+
+    this.maxSize = maxSize;
+  }
+
+  public synchronized Object put(Object key, Object value, int sizeEstimate) {
+    final Entry oldEntry = entries.remove(key);
+    if (oldEntry != null) {
+      size -= oldEntry.size;
+    }
+
+    final int entrySize = Math.max(0, sizeEstimate);
+    if (entrySize <= maxSize) {
+      entries.put(key, new Entry(value, entrySize));
+      size += entrySize;
+      putCount++;
+      prune();
+    }
+
+    return oldEntry == null ? null : oldEntry.value;
+  }
+
+  public synchronized Object get(Object key) {
+    final Entry entry = entries.get(key);
+    if (entry == null) {
+      missCount++;
+      return null;
+    }
+
+    hitCount++;
+    return entry.value;
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    size = 0;
+  }
+
+  public synchronized Object remove(Object key) {
+    final Entry entry = entries.remove(key);
+    if (entry == null) {
+      return null;
+    }
+
+    size -= entry.size;
+    return entry.value;
+  }
+
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  public synchronized void recordLoadTime(long loadTimeNanos) {
+    this.loadCount++;
+    this.loadTimeNanos += loadTimeNanos;
+  }
+
+  /**
+   * @return The memory budget of this cache in bytes.
+   */
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return The sum of the size estimates of all cached entries.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Evicts least recently used entries until the size of the cache is within the budget.
+   */
+  private void prune() {
+    final Iterator<Entry> it = entries.values().iterator();
+    while (size > maxSize && it.hasNext()) {
+      size -= it.next().size;
+      it.remove();
+      evictionCount++;
+    }
+  }
+
+  /**
+   * A view of the counters of the enclosing cache.
+   */
+  private final class Statistics implements CacheStatistics {
+
+    public long getHitCount() {
+      synchronized (LRUCache.this) {
+        return hitCount;
+      }
+    }
+
+    public long getMissCount() {
+      synchronized (LRUCache.this) {
+        return missCount;
+      }
+    }
+
+    public long getPutCount() {
+      synchronized (LRUCache.this) {
+        return putCount;
+      }
+    }
+
+    public long getEvictionCount() {
+      synchronized (LRUCache.this) {
+        return evictionCount;
+      }
+    }
+
+    public int getEntryCount() {
+      synchronized (LRUCache.this) {
+        return entries.size();
+      }
+    }
+
+    public long getResidentBytes() {
+      return getSize();
+    }
+
+    public long getLoadCount() {
+      synchronized (LRUCache.this) {
+        return loadCount;
+      }
+    }
+
+    public long getTotalLoadTime() {
+      synchronized (LRUCache.this) {
+        return TimeUnit.NANOSECONDS.toMillis(loadTimeNanos);
+      }
+    }
+
+    public void reset() {
+      synchronized (LRUCache.this) {
+        hitCount = missCount = putCount = evictionCount = loadCount = loadTimeNanos = 0;
+      }
+    }
+  }
+
+  private static final class Entry {
+    final Object value;
+    final int size;
+
+    Entry(Object value, int size) {
+      this.value = value;
+      this.size = size;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.util.cache;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.pdfbox.jbig2.util.log.Logger;
+import org.apache.pdfbox.jbig2.util.log.LoggerFactory;
+
+/**
+ * Provides a shared {@link LRUCache}. Its memory budget in bytes is read from the system property
+ * {@value #MAX_SIZE_PROPERTY} and defaults to {@value #DEFAULT_MAX_SIZE} bytes. The statistics of
+ * the cache are registered as platform MBean named {@value #OBJECT_NAME}.
+ */
+public class LRUCacheBridge implements CacheBridge {
+
+  private static final Logger log = LoggerFactory.getLogger(LRUCacheBridge.class);
+
+  public static final String MAX_SIZE_PROPERTY = "org.apache.pdfbox.jbig2.cache.maxSize";
+
+  public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+  public static final String OBJECT_NAME = "org.apache.pdfbox.jbig2:type=Cache,name=LRUCache";
+
+  private static final LRUCache cache = new LRUCache(Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+
+  static {
+    registerStatistics();
+  }
+
+  public Cache getCache() {
+    return cache;
+  }
+
+  private static void registerStatistics() {
+    try {
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(new StandardMBean(cache.getStatistics(), CacheStatistics.class, true), name);
+      }
+    } catch (JMException e) {
+      log.info("Cache statistics could not be registered as MBean", e);
+    } catch (SecurityException e) {
+      log.info("Cache statistics could not be registered as MBean", e);
+    }
+  }
+
+}
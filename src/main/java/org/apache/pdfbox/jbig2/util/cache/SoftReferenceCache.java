@@ -24,22 +24,22 @@ public class SoftReferenceCache implements Cache {
 
   private HashMap<Object, SoftReference<?>> cache = new HashMap<Object, SoftReference<?>>();
 
-  public Object put(Object key, Object value, int sizeEstimate) {
+  public synchronized Object put(Object key, Object value, int sizeEstimate) {
     SoftReference<Object> softReference = new SoftReference<Object>(value);
     SoftReference<?> oldValue = cache.put(key, softReference);
     return getValueNullSafe(oldValue);
   }
 
-  public Object get(Object key) {
+  public synchronized Object get(Object key) {
     SoftReference<?> softReference = cache.get(key);
     return getValueNullSafe(softReference);
   }
 
-  public void clear() {
+  public synchronized void clear() {
     cache.clear();
   }
 
-  public Object remove(Object key) {
+  public synchronized Object remove(Object key) {
     SoftReference<?> removedObj = cache.remove(key);
     return getValueNullSafe(removedObj);
   }
@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.util.cache;
+
+/**
+ * Holds the optional cache for the tiles served by
+ * {@link org.apache.pdfbox.jbig2.JBIG2ImageReader#readTile(int, int, int)} and
+ * {@link org.apache.pdfbox.jbig2.JBIG2ImageReader#readTileRaster(int, int, int)}. The tiles are
+ * keyed by the content hash of their page, so that viewers which request the same tiles repeatedly
+ * (e.g. while panning) extract and convert them only once, no matter which reader they use.
+ * <p>
+ * The cache is enabled by default with a memory budget of {@value #DEFAULT_MAX_SIZE} bytes. The
+ * budget can be changed, or set to {@code 0} to disable the cache, either with the system property
+ * {@value #MAX_SIZE_PROPERTY} or with {@link #setMaxSize(long)}.
+ */
+public final class TileCache {
+
+  public static final String MAX_SIZE_PROPERTY = "org.apache.pdfbox.jbig2.tileCache.maxSize";
+
+  public static final long DEFAULT_MAX_SIZE = 16L * 1024 * 1024;
+
+  private static volatile LRUCache cache = create(Long.getLong(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+
+  private TileCache() {
+  }
+
+  /**
+   * Returns the tile cache.
+   * 
+   * @return The tile cache or {@code null} if it is disabled.
+   */
+  public static InstrumentedCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Sets the memory budget of the tile cache. All currently cached tiles are dropped.
+   * 
+   * @param maxSize - The memory budget in bytes, {@code 0} disables the cache.
+   */
+  public static void setMaxSize(long maxSize) {
+    if (maxSize < 0)
+      throw new IllegalArgumentException("maxSize must not be negative");
+
+    cache = create(maxSize);
+  }
+
+  private static LRUCache create(long maxSize) {
+    return maxSize > 0 ? new LRUCache(maxSize) : null;
+  }
+}
@@ -19,7 +19,12 @@ package org.apache.pdfbox.jbig2;
 
 import static org.junit.Assert.*;
 
+import java.awt.Rectangle;
+import java.util.Random;
+
 import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.image.Bitmaps;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
 
 import junit.framework.Assert;
 
@@ -95,4 +100,69 @@ public class BitmapTest {
     Assert.assertEquals(width, bitmap.getWidth());
   }
 
+  @Test
+  public void subBitmapEqualsExtractedRegionTest() {
+    final Random random = new Random(4711);
+    final Bitmap parent = new Bitmap(93, 17);
+    random.nextBytes(parent.getByteArray());
+
+    for (int x = 0; x < 40; x++) {
+      final Rectangle roi = new Rectangle(x, 2, 1 + random.nextInt(93 - x), 11);
+      final Bitmap subBitmap = parent.subBitmap(roi);
+
+      assertEquals(roi.width, subBitmap.getWidth());
+      assertEquals(roi.height, subBitmap.getHeight());
+
+      final byte[] expected = Bitmaps.extract(roi, parent).getByteArray();
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(expected[i], subBitmap.getByte(i));
+      }
+      assertFalse(((SubBitmap) subBitmap).isDetached());
+
+      assertArrayEquals(expected, subBitmap.getByteArray());
+      assertTrue(((SubBitmap) subBitmap).isDetached());
+    }
+  }
+
+  @Test
+  public void subBitmapIsBlittedInPlaceTest() {
+    final Random random = new Random(815);
+    final Bitmap parent = new Bitmap(93, 17);
+    random.nextBytes(parent.getByteArray());
+
+    for (int i = 0; i < 200; i++) {
+      final int x = random.nextInt(80);
+      final Rectangle roi = new Rectangle(x, random.nextInt(10), 1 + random.nextInt(93 - x), 1 + random.nextInt(7));
+      final Bitmap subBitmap = parent.subBitmap(roi);
+      final Bitmap copy = Bitmaps.extract(roi, parent);
+
+      final Bitmap expected = new Bitmap(120, 30);
+      random.nextBytes(expected.getByteArray());
+      final Bitmap actual = new Bitmap(expected.getWidth(), expected.getHeight());
+      System.arraycopy(expected.getByteArray(), 0, actual.getByteArray(), 0, expected.getByteArray().length);
+
+      final CombinationOperator op = CombinationOperator.values()[random.nextInt(5)];
+      final int dstX = random.nextInt(expected.getWidth() - roi.width + 1);
+      final int dstY = random.nextInt(expected.getHeight() - roi.height + 1);
+      Bitmaps.blit(copy, expected, dstX, dstY, op);
+      Bitmaps.blit(subBitmap, actual, dstX, dstY, op);
+
+      assertArrayEquals(expected.getByteArray(), actual.getByteArray());
+      assertFalse(((SubBitmap) subBitmap).isDetached());
+    }
+  }
+
+  @Test
+  public void subBitmapIsIndependentOfParentOnceAccessedTest() {
+    final Bitmap parent = new Bitmap(32, 4);
+    final Bitmap subBitmap = parent.subBitmap(new Rectangle(8, 1, 16, 2));
+
+    subBitmap.setPixel(0, 0, (byte) 1);
+    parent.setPixel(9, 1, (byte) 1);
+
+    assertEquals(1, subBitmap.getPixel(0, 0));
+    assertEquals(0, subBitmap.getPixel(1, 0));
+    assertEquals(0, parent.getPixel(8, 1));
+  }
+
 }
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.pdfbox.jbig2.err.JBIG2Exception;
+import org.junit.Test;
+
+public class JBIG2DecoderTest {
+
+  @Test
+  public void decodeFile() throws IOException, JBIG2Exception {
+    final String filepath = "/images/sampledata_page3.jb2";
+
+    final Bitmap expected = new JBIG2DocumentFacade(createImageInputStream(filepath)).getPageBitmap(1);
+    final Bitmap actual = JBIG2Decoder.decode(readResource(filepath), null);
+
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    assertArrayEquals(expected.getByteArray(), actual.getByteArray());
+  }
+
+  @Test
+  public void decodePages() throws IOException, JBIG2Exception {
+    final String filepath = "/images/sampledata.jb2";
+    final byte[] data = readResource(filepath);
+
+    for (int pageNumber = 1; pageNumber <= 3; pageNumber++) {
+      final Bitmap expected = new JBIG2DocumentFacade(createImageInputStream(filepath)).getPageBitmap(pageNumber);
+      assertArrayEquals(expected.getByteArray(), JBIG2Decoder.decode(data, pageNumber, null).getByteArray());
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void decodeMissingPage() throws IOException {
+    JBIG2Decoder.decode(readResource("/images/sampledata.jb2"), 4, null);
+  }
+
+  @Test
+  public void decodeEmbeddedDataWithGlobals() throws IOException, JBIG2Exception {
+    final String imagePath = "/com/levigo/jbig2/github/21.jb2";
+    final String globalsPath = "/com/levigo/jbig2/github/21.glob";
+
+    final Bitmap expected = JBIG2DocumentFacade.doc(createImageInputStream(imagePath),
+        createImageInputStream(globalsPath)).getPage(1).getBitmap();
+
+    // Embed the data in a larger buffer, as it's typical for data read from a PDF
+    final byte[] image = readResource(imagePath);
+    final ByteBuffer buffer = ByteBuffer.allocate(image.length + 20);
+    ((Buffer) buffer).position(10);
+    buffer.put(image);
+    ((Buffer) buffer).position(10).limit(10 + image.length);
+
+    final JBIG2Globals globals = JBIG2Decoder.decodeGlobals(readResource(globalsPath));
+    final Bitmap actual = JBIG2Decoder.decode(buffer, globals);
+
+    assertArrayEquals(expected.getByteArray(), actual.getByteArray());
+    assertArrayEquals(actual.getByteArray(), JBIG2Decoder.decode(buffer, globals).getByteArray());
+    assertEquals(10, buffer.position());
+  }
+
+  private ImageInputStream createImageInputStream(String path) throws IOException {
+    return ImageIO.createImageInputStream(getClass().getResourceAsStream(path));
+  }
+
+  private byte[] readResource(String path) throws IOException {
+    final InputStream is = getClass().getResourceAsStream(path);
+    try {
+      final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[4096];
+      int read;
+      while ((read = is.read(buffer)) > 0) {
+        bos.write(buffer, 0, read);
+      }
+      return bos.toByteArray();
+    } finally {
+      is.close();
+    }
+  }
+}
@@ -17,10 +17,21 @@
 
 package org.apache.pdfbox.jbig2;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
@@ -33,6 +44,10 @@ import org.apache.pdfbox.jbig2.JBIG2ImageReaderSpi;
 import org.apache.pdfbox.jbig2.err.IntegerMaxValueException;
 import org.apache.pdfbox.jbig2.err.InvalidHeaderValueException;
 import org.apache.pdfbox.jbig2.io.DefaultInputStreamFactory;
+import org.apache.pdfbox.jbig2.util.ContentHash;
+import org.apache.pdfbox.jbig2.util.cache.CacheFactory;
+import org.apache.pdfbox.jbig2.util.cache.LRUCache;
+import org.apache.pdfbox.jbig2.util.cache.SoftReferenceCache;
 import org.junit.Test;
 
 public class JBIG2ImageReaderTest {
@@ -72,6 +87,34 @@ public class JBIG2ImageReaderTest {
     Assert.assertNotNull(bufferedImage);
   }
 
+  @Test
+  public void testReadReturnsPackedImage() throws IOException {
+    String filepath = "/images/042_1.jb2";
+    int imageIndex = 0;
+
+    InputStream inputStream = getClass().getResourceAsStream(filepath);
+    DefaultInputStreamFactory disf = new DefaultInputStreamFactory();
+    ImageInputStream imageInputStream = disf.getInputStream(inputStream);
+
+    JBIG2ImageReader imageReader = new JBIG2ImageReader(new JBIG2ImageReaderSpi());
+    imageReader.setInput(imageInputStream);
+
+    BufferedImage bufferedImage = imageReader.read(imageIndex, imageReader.getDefaultReadParam());
+    Raster raster = imageReader.readRaster(imageIndex, imageReader.getDefaultReadParam());
+
+    Assert.assertEquals(BufferedImage.TYPE_BYTE_BINARY, bufferedImage.getType());
+    Assert.assertEquals(raster.getWidth(), bufferedImage.getWidth());
+    Assert.assertEquals(raster.getHeight(), bufferedImage.getHeight());
+
+    // the 8-bit raster holds 1 for white, 0 for black
+    for (int y = 0; y < raster.getHeight(); y += 7) {
+      for (int x = 0; x < raster.getWidth(); x += 3) {
+        int expected = raster.getSample(x, y, 0) == 1 ? 0xffffffff : 0xff000000;
+        Assert.assertEquals(expected, bufferedImage.getRGB(x, y));
+      }
+    }
+  }
+
   @Test
   public void testReadRaster() throws IOException, InvalidHeaderValueException, IntegerMaxValueException {
     String filepath = "/images/042_1.jb2";
@@ -132,10 +175,245 @@ public class JBIG2ImageReaderTest {
     Assert.assertEquals(17, numImages);
   }
 
+  @Test
+  public void testConcurrentRead() throws Exception {
+    String filepath = "/images/002.jb2";
+    DefaultInputStreamFactory disf = new DefaultInputStreamFactory();
+
+    JBIG2ImageReader sequentialReader = new JBIG2ImageReader(new JBIG2ImageReaderSpi());
+    sequentialReader.setInput(disf.getInputStream(getClass().getResourceAsStream(filepath)));
+    int numImages = sequentialReader.getNumImages(true);
+
+    List<byte[]> expected = new ArrayList<byte[]>();
+    for (int i = 0; i < numImages; i++) {
+      expected.add(((DataBufferByte) sequentialReader.readRaster(i, null).getDataBuffer()).getData());
+    }
+
+    final JBIG2ImageReader concurrentReader = new JBIG2ImageReader(new JBIG2ImageReaderSpi());
+    concurrentReader.setInput(disf.getInputStream(getClass().getResourceAsStream(filepath)));
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+      for (int i = 0; i < numImages; i++) {
+        final int imageIndex = i;
+        results.add(executor.submit(new Callable<byte[]>() {
+          public byte[] call() throws Exception {
+            return ((DataBufferByte) concurrentReader.readRaster(imageIndex, null).getDataBuffer()).getData();
+          }
+        }));
+      }
+
+      for (int i = 0; i < numImages; i++) {
+        Assert.assertTrue("page " + i, Arrays.equals(expected.get(i), results.get(i).get()));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testReopenedDocumentHitsCache() throws IOException {
+    String filepath = "/images/042_1.jb2";
+    DefaultInputStreamFactory disf = new DefaultInputStreamFactory();
+
+    JBIG2ImageReader firstReader = new JBIG2ImageReader(new JBIG2ImageReaderSpi());
+    firstReader.setInput(disf.getInputStream(getClass().getResourceAsStream(filepath)));
+    firstReader.read(0, null);
+
+    long hits = CacheFactory.getStatistics().getHitCount();
+
+    JBIG2ImageReader secondReader = new JBIG2ImageReader(new JBIG2ImageReaderSpi());
+    secondReader.setInput(disf.getInputStream(getClass().getResourceAsStream(filepath)));
+    secondReader.read(0, null);
+
+    Assert.assertEquals(hits + 1, CacheFactory.getStatistics().getHitCount());
+  }
+
   @Test
   public void testCanReadRaster() throws IOException {
     JBIG2ImageReader imageReader = new JBIG2ImageReader(new JBIG2ImageReaderSpi());
     Assert.assertTrue(imageReader.canReadRaster());
   }
 
+  @Test
+  public void testTileGrid() throws IOException {
+    JBIG2ImageReader imageReader = createReader("/images/042_3.jb2");
+
+    Assert.assertTrue(imageReader.isImageTiled(0));
+    Assert.assertEquals(JBIG2ImageReader.TILE_SIZE, imageReader.getTileWidth(0));
+    Assert.assertEquals(JBIG2ImageReader.TILE_SIZE, imageReader.getTileHeight(0));
+    Assert.assertEquals(0, imageReader.getTileGridXOffset(0));
+    Assert.assertEquals(0, imageReader.getTileGridYOffset(0));
+  }
+
+  @Test
+  public void testReadTile() throws IOException {
+    JBIG2ImageReader imageReader = createReader("/images/042_3.jb2");
+    Raster page = imageReader.read(0, null).getRaster();
+
+    int tileSize = JBIG2ImageReader.TILE_SIZE;
+    int columns = (page.getWidth() + tileSize - 1) / tileSize;
+    int rows = (page.getHeight() + tileSize - 1) / tileSize;
+    for (int tileY = 0; tileY < rows; tileY++) {
+      for (int tileX = 0; tileX < columns; tileX++) {
+        Raster tile = imageReader.readTile(0, tileX, tileY).getRaster();
+        int width = Math.min(tileSize, page.getWidth() - tileX * tileSize);
+        int height = Math.min(tileSize, page.getHeight() - tileY * tileSize);
+
+        Assert.assertEquals(width, tile.getWidth());
+        Assert.assertEquals(height, tile.getHeight());
+        Assert.assertTrue("tile " + tileX + "/" + tileY,
+            Arrays.equals(page.getPixels(tileX * tileSize, tileY * tileSize, width, height, (int[]) null),
+                tile.getPixels(0, 0, width, height, (int[]) null)));
+      }
+    }
+  }
+
+  @Test
+  public void testReadTileRaster() throws IOException {
+    JBIG2ImageReader imageReader = createReader("/images/042_3.jb2");
+    int tileSize = JBIG2ImageReader.TILE_SIZE;
+
+    // An inner tile and the bottom right one, which is cut to the page size
+    int[][] tiles = {
+        {
+            2, 3
+        }, {
+            (imageReader.getWidth(0) - 1) / tileSize, (imageReader.getHeight(0) - 1) / tileSize
+        }
+    };
+
+    for (int[] t : tiles) {
+      Rectangle region = new Rectangle(t[0] * tileSize, t[1] * tileSize, tileSize, tileSize)
+          .intersection(new Rectangle(0, 0, imageReader.getWidth(0), imageReader.getHeight(0)));
+      ImageReadParam param = imageReader.getDefaultReadParam();
+      param.setSourceRegion(region);
+      Raster expected = imageReader.readRaster(0, param);
+
+      Raster tile = imageReader.readTileRaster(0, t[0], t[1]);
+      Assert.assertEquals(region.width, tile.getWidth());
+      Assert.assertEquals(region.height, tile.getHeight());
+      Assert.assertTrue(Arrays.equals(expected.getPixels(0, 0, region.width, region.height, (int[]) null),
+          tile.getPixels(0, 0, region.width, region.height, (int[]) null)));
+    }
+  }
+
+  @Test
+  public void testReadReturnsCopy() throws IOException {
+    String filepath = "/images/042_5.jb2";
+    BufferedImage image = createReader(filepath).read(0, null);
+    byte[] expected = ((DataBufferByte) image.getRaster().getDataBuffer()).getData().clone();
+
+    // Draw on the image, a second reader gets the page from the cache
+    byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) ~data[i];
+    }
+
+    BufferedImage again = createReader(filepath).read(0, null);
+    Assert.assertTrue(Arrays.equals(expected, ((DataBufferByte) again.getRaster().getDataBuffer()).getData()));
+  }
+
+  @Test
+  public void testReadTileReturnsCopy() throws IOException {
+    JBIG2ImageReader imageReader = createReader("/images/042_3.jb2");
+    int tileSize = JBIG2ImageReader.TILE_SIZE;
+    int columns = (imageReader.getWidth(0) + tileSize - 1) / tileSize;
+    int rows = (imageReader.getHeight(0) + tileSize - 1) / tileSize;
+
+    for (int tileY = 0; tileY < rows; tileY++) {
+      for (int tileX = 0; tileX < columns; tileX++) {
+        BufferedImage tile = imageReader.readTile(0, tileX, tileY);
+        byte[] expected = ((DataBufferByte) tile.getRaster().getDataBuffer()).getData().clone();
+
+        // Untouched tiles of a tiled page share their pixels, so every tile is inverted
+        byte[] data = ((DataBufferByte) tile.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < data.length; i++) {
+          data[i] = (byte) ~data[i];
+        }
+
+        Assert.assertTrue("tile " + tileX + "/" + tileY, Arrays.equals(expected,
+            ((DataBufferByte) imageReader.readTile(0, tileX, tileY).getRaster().getDataBuffer()).getData()));
+      }
+    }
+  }
+
+  @Test
+  public void testReadTileRasterReturnsCopy() throws IOException {
+    JBIG2ImageReader imageReader = createReader("/images/042_3.jb2");
+    Raster tile = imageReader.readTileRaster(0, 1, 1);
+    int[] expected = tile.getPixels(0, 0, tile.getWidth(), tile.getHeight(), (int[]) null);
+
+    WritableRaster writable = (WritableRaster) tile;
+    for (int y = 0; y < writable.getHeight(); y++) {
+      for (int x = 0; x < writable.getWidth(); x++) {
+        writable.setSample(x, y, 0, 255 - writable.getSample(x, y, 0));
+      }
+    }
+
+    Raster again = imageReader.readTileRaster(0, 1, 1);
+    Assert.assertNotSame(tile, again);
+    Assert.assertTrue(
+        Arrays.equals(expected, again.getPixels(0, 0, again.getWidth(), again.getHeight(), (int[]) null)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReadTileOutsidePage() throws IOException {
+    JBIG2ImageReader imageReader = createReader("/images/042_3.jb2");
+    imageReader.readTile(0, imageReader.getWidth(0) / JBIG2ImageReader.TILE_SIZE + 1, 0);
+  }
+
+  @Test
+  public void testReadTileOutsidePageDoesNotDecode() throws IOException {
+    JBIG2ImageReader imageReader = createReader("/images/042_4.jb2");
+    long requests = CacheFactory.getStatistics().getHitCount() + CacheFactory.getStatistics().getMissCount();
+
+    try {
+      imageReader.readTile(0, 0, imageReader.getHeight(0) / JBIG2ImageReader.TILE_SIZE + 1);
+      Assert.fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      // The page bitmap hasn't been looked up, let alone decoded
+      Assert.assertEquals(requests,
+          CacheFactory.getStatistics().getHitCount() + CacheFactory.getStatistics().getMissCount());
+    }
+  }
+
+  @Test
+  public void testReadFile() throws Exception {
+    String filepath = "/images/042_1.jb2";
+    File file = new File(getClass().getResource(filepath).toURI());
+    Assert.assertTrue(new JBIG2ImageReaderSpi().canDecodeInput(file));
+
+    JBIG2ImageReader fileReader = new JBIG2ImageReader(new JBIG2ImageReaderSpi());
+    fileReader.setInput(file);
+    BufferedImage expected = createReader(filepath).read(0);
+    BufferedImage actual = fileReader.read(0);
+
+    Assert.assertTrue(Arrays.equals(((DataBufferByte) expected.getRaster().getDataBuffer()).getData(),
+        ((DataBufferByte) actual.getRaster().getDataBuffer()).getData()));
+  }
+
+  @Test
+  public void testPageKeyHashesOnlyForSharedCache() throws IOException {
+    DefaultInputStreamFactory disf = new DefaultInputStreamFactory();
+    JBIG2Document document = new JBIG2Document(disf.getInputStream(getClass().getResourceAsStream(
+        "/images/042_1.jb2")));
+    JBIG2Page page = document.getPage(1);
+
+    Assert.assertSame(page, JBIG2ImageReader.getPageKey(page, new SoftReferenceCache()));
+    Assert.assertSame(page, JBIG2ImageReader.getPageKey(page, new LRUCache(0)));
+
+    Object key = JBIG2ImageReader.getPageKey(page, new LRUCache(1000));
+    Assert.assertTrue(key instanceof ContentHash);
+    Assert.assertSame(key, JBIG2ImageReader.getPageKey(page, new LRUCache(1000)));
+  }
+
+  private JBIG2ImageReader createReader(String filepath) throws IOException {
+    DefaultInputStreamFactory disf = new DefaultInputStreamFactory();
+    JBIG2ImageReader imageReader = new JBIG2ImageReader(new JBIG2ImageReaderSpi());
+    imageReader.setInput(disf.getInputStream(getClass().getResourceAsStream(filepath)));
+    return imageReader;
+  }
+
 }
@@ -17,6 +17,11 @@
 
 package org.apache.pdfbox.jbig2;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
@@ -37,6 +42,30 @@ import org.junit.Test;
 
 public class JBIG2PageTest {
 
+  @Test
+  public void retainsSharedGlobalSegmentUntilLastPage() throws IOException, JBIG2Exception {
+    // segment 0 is a global symbol dictionary referred to by pages 1 and 2 only
+    InputStream is = getClass().getResourceAsStream("/images/sampledata.jb2");
+    DefaultInputStreamFactory disf = new DefaultInputStreamFactory();
+    ImageInputStream iis = disf.getInputStream(is);
+    JBIG2Document doc = new JBIG2Document(iis);
+
+    SegmentHeader dictionary = doc.getGlobalSegment(0);
+    assertNotNull(dictionary);
+    assertFalse(dictionary.isRetained());
+
+    doc.getPage(1).getBitmap();
+    assertTrue(dictionary.isRetained());
+    SegmentData data = dictionary.getSegmentData();
+
+    doc.getPage(3).getBitmap();
+    assertTrue(dictionary.isRetained());
+
+    doc.getPage(2).getBitmap();
+    assertSame(data, dictionary.getSegmentData());
+    assertFalse(dictionary.isRetained());
+  }
+
   // TESTS WITH TESTOUTPUT
   // Ignore in build process
 
@@ -0,0 +1,240 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Random;
+
+import org.apache.pdfbox.jbig2.image.Bitmaps;
+import org.apache.pdfbox.jbig2.image.FilterType;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
+import org.junit.Test;
+
+public class RunLengthBitmapTest {
+
+  private static final int WIDTH = 83;
+  private static final int HEIGHT = 37;
+
+  /**
+   * Creates a bitmap with random runs and draws the same runs pixel by pixel into {@code packed}.
+   */
+  static RunLengthBitmap createBitmap(Random random, Bitmap packed) {
+    final RunLengthBitmap bitmap = new RunLengthBitmap(packed.getWidth(), packed.getHeight());
+    final int[] changingElements = new int[64];
+
+    for (int y = 0; y < packed.getHeight(); y++) {
+      if (random.nextInt(4) == 0) {
+        continue;
+      }
+
+      // Changing elements may repeat or go back, and the last ones may lie beyond the width
+      int count = random.nextInt(changingElements.length);
+      int offset = 0;
+      for (int i = 0; i < count; i++) {
+        offset += random.nextInt(9) - 1;
+        changingElements[i] = offset;
+      }
+      bitmap.setLine(y, changingElements, count);
+
+      for (int index = 0, x = 0; index < count; index++) {
+        final int end = Math.min(changingElements[index], packed.getWidth());
+        for (; x < end; x++) {
+          packed.setPixel(x, y, (byte) (index & 1));
+        }
+      }
+    }
+
+    return bitmap;
+  }
+
+  private static Bitmap createRandomBitmap(Random random, int width, int height) {
+    final Bitmap bitmap = new Bitmap(width, height);
+    random.nextBytes(bitmap.getByteArray());
+    return bitmap;
+  }
+
+  @Test
+  public void materializesRuns() {
+    final Random random = new Random(4711);
+    for (int i = 0; i < 20; i++) {
+      final Bitmap expected = new Bitmap(WIDTH, HEIGHT);
+      final RunLengthBitmap bitmap = createBitmap(random, expected);
+
+      for (int index = 0; index < expected.getByteArray().length; index++) {
+        assertEquals(expected.getByte(index), bitmap.getByte(index));
+      }
+      assertNotNull(bitmap.getRuns());
+
+      assertArrayEquals(expected.getByteArray(), bitmap.getByteArray());
+      assertNull(bitmap.getRuns());
+    }
+  }
+
+  /** Runs must give the same bytes as the packed bitmap, also around a source at a non-aligned x. */
+  @Test
+  public void blitsRuns() {
+    final Random random = new Random(815);
+    final int[][] locations = {
+        {
+            0, 0
+        }, {
+            5, 3
+        }, {
+            13, 14
+        }, {
+            -11, -7
+        }, {
+            40, 20
+        }, {
+            -90, 0
+        }, {
+            16, -40
+        }
+    };
+
+    for (CombinationOperator op : CombinationOperator.values()) {
+      for (int[] location : locations) {
+        final Bitmap packed = new Bitmap(WIDTH, HEIGHT);
+        final RunLengthBitmap bitmap = createBitmap(random, packed);
+
+        final Bitmap expected = createRandomBitmap(random, 97, 51);
+        final Bitmap actual = new Bitmap(97, 51);
+        System.arraycopy(expected.getByteArray(), 0, actual.getByteArray(), 0, expected.getByteArray().length);
+
+        Bitmaps.blit(packed, expected, location[0], location[1], op);
+        Bitmaps.blit(bitmap, actual, location[0], location[1], op);
+
+        assertNotNull(bitmap.getRuns());
+        assertArrayEquals(op + " at " + location[0] + "/" + location[1], expected.getByteArray(),
+            actual.getByteArray());
+      }
+    }
+  }
+
+  @Test
+  public void extractsRuns() {
+    final Random random = new Random(42);
+    final Bitmap packed = new Bitmap(WIDTH, HEIGHT);
+    final RunLengthBitmap bitmap = createBitmap(random, packed);
+
+    final Rectangle roi = new Rectangle(13, 5, 41, 29);
+    final Bitmap extracted = Bitmaps.extract(roi, bitmap);
+
+    assertTrue(extracted instanceof RunLengthBitmap);
+    assertArrayEquals(Bitmaps.extract(roi, packed).getByteArray(), extracted.getByteArray());
+  }
+
+  @Test
+  public void expandsRuns() {
+    final Random random = new Random(1234);
+    final Bitmap packed = new Bitmap(WIDTH, HEIGHT);
+    final RunLengthBitmap bitmap = createBitmap(random, packed);
+
+    assertRasterEquals(Bitmaps.asRaster(packed), Bitmaps.asRaster(bitmap));
+
+    final JBIG2ReadParam param = new JBIG2ReadParam(1, 1, 0, 0, new Rectangle(0, 0, WIDTH, HEIGHT),
+        new Dimension(WIDTH / 3, HEIGHT / 3));
+    assertRasterEquals(Bitmaps.asRaster(packed, param, FilterType.Bessel),
+        Bitmaps.asRaster(bitmap, param, FilterType.Bessel));
+
+    assertNotNull(bitmap.getRuns());
+  }
+
+  @Test
+  public void keepsRunsWhenConvertedToImage() {
+    final Random random = new Random(5678);
+    final Bitmap packed = new Bitmap(WIDTH, HEIGHT);
+    final RunLengthBitmap bitmap = createBitmap(random, packed);
+
+    final BufferedImage image = Bitmaps.asBufferedImage(bitmap);
+
+    assertNotNull(bitmap.getRuns());
+    assertRasterEquals(Bitmaps.asBufferedImage(packed).getRaster(), image.getRaster());
+  }
+
+  /** Cached bitmaps are read by conversions like these, which mustn't change their size. */
+  @Test
+  public void keepsMemorySizeWhenConverted() {
+    final RunLengthBitmap bitmap = createBitmap(new Random(91), new Bitmap(WIDTH, HEIGHT));
+    final int size = bitmap.getMemorySize();
+    assertEquals(bitmap.getRunMemorySize(), size);
+
+    Bitmaps.asBufferedImage(bitmap);
+    Bitmaps.asRaster(bitmap);
+    Bitmaps.asBufferedImage(bitmap, new JBIG2ReadParam(2, 3, 0, 1, null, null), FilterType.Bessel);
+    Bitmaps.asBufferedImage(bitmap, new JBIG2ReadParam(1, 1, 0, 0, null, new Dimension(WIDTH / 2, HEIGHT / 2)),
+        FilterType.Bessel);
+    assertEquals(size, bitmap.getMemorySize());
+
+    bitmap.getByte(0);
+    assertEquals(size + bitmap.getRowStride() * HEIGHT, bitmap.getMemorySize());
+    bitmap.getByteArray();
+    assertEquals(bitmap.getRowStride() * HEIGHT, bitmap.getMemorySize());
+  }
+
+  private static void assertRasterEquals(Raster expected, Raster actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    assertArrayEquals(expected.getPixels(0, 0, expected.getWidth(), expected.getHeight(), (int[]) null),
+        actual.getPixels(0, 0, actual.getWidth(), actual.getHeight(), (int[]) null));
+  }
+
+  @Test
+  public void detectsBlankAreas() {
+    final RunLengthBitmap bitmap = new RunLengthBitmap(WIDTH, HEIGHT);
+    bitmap.setLine(10, new int[]{
+        20, 30, 50, 51
+    }, 4);
+
+    assertTrue(bitmap.isBlank(new Rectangle(0, 0, WIDTH, 10)));
+    assertTrue(bitmap.isBlank(new Rectangle(0, 0, 20, HEIGHT)));
+    assertTrue(bitmap.isBlank(new Rectangle(30, 0, 20, HEIGHT)));
+    assertTrue(bitmap.isBlank(new Rectangle(51, 0, WIDTH - 51, HEIGHT)));
+    assertFalse(bitmap.isBlank(new Rectangle(29, 10, 1, 1)));
+    assertFalse(bitmap.isBlank(new Rectangle(50, 5, 10, 10)));
+
+    final Random random = new Random(99);
+    final Bitmap packed = new Bitmap(WIDTH, HEIGHT);
+    final RunLengthBitmap randomBitmap = createBitmap(random, packed);
+    for (int i = 0; i < 200; i++) {
+      final int x = random.nextInt(WIDTH);
+      final int y = random.nextInt(HEIGHT);
+      final Rectangle roi = new Rectangle(x, y, 1 + random.nextInt(WIDTH - x), 1 + random.nextInt(HEIGHT - y));
+      assertEquals(packed.isBlank(roi), randomBitmap.isBlank(roi));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void rejectsRunsAfterAccess() {
+    final RunLengthBitmap bitmap = new RunLengthBitmap(WIDTH, HEIGHT);
+    bitmap.getByte(0);
+    bitmap.setLine(0, new int[]{
+        1, 2
+    }, 2);
+  }
+}
@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.pdfbox.jbig2.image.Bitmaps;
+import org.apache.pdfbox.jbig2.image.FilterType;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
+import org.junit.Test;
+
+public class TiledBitmapTest {
+
+  private static final int WIDTH = 203;
+  private static final int HEIGHT = 131;
+
+  private static Bitmap createPlainBitmap(int defaultPixel) {
+    final Bitmap bitmap = new Bitmap(WIDTH, HEIGHT);
+    if (defaultPixel != 0) {
+      Arrays.fill(bitmap.getByteArray(), (byte) 0xff);
+    }
+    return bitmap;
+  }
+
+  /**
+   * Blits random packed and run-length bitmaps into a tiled and a plain bitmap and returns the
+   * tiled one. The bitmaps are placed within the page, like regions are.
+   */
+  private static TiledBitmap blitRandomBitmaps(Random random, Bitmap expected, int defaultPixel) {
+    final TiledBitmap tiled = new TiledBitmap(WIDTH, HEIGHT, defaultPixel, 24, 16);
+
+    for (int i = 0; i < 40; i++) {
+      final int width = 1 + random.nextInt(60);
+      final int height = 1 + random.nextInt(40);
+      final Bitmap src = random.nextBoolean() ? RunLengthBitmapTest.createBitmap(random, new Bitmap(width, height))
+          : createRandomBitmap(random, width, height);
+      final int x = random.nextInt(WIDTH - width + 1);
+      final int y = random.nextInt(HEIGHT - height + 1);
+      final CombinationOperator op = CombinationOperator.values()[random.nextInt(5)];
+
+      Bitmaps.blit(src, expected, x, y, op);
+      Bitmaps.blit(src, tiled, x, y, op);
+    }
+
+    return tiled;
+  }
+
+  /** Creates a bitmap with random pixels and cleared padding bits, like decoded regions have. */
+  private static Bitmap createRandomBitmap(Random random, int width, int height) {
+    final Bitmap bitmap = new Bitmap(width, height);
+    final byte[] data = bitmap.getByteArray();
+    random.nextBytes(data);
+
+    final byte padding = (byte) (0xff << (7 - ((width - 1) & 7)));
+    for (int i = bitmap.getRowStride() - 1; i < data.length; i += bitmap.getRowStride()) {
+      data[i] &= padding;
+    }
+    return bitmap;
+  }
+
+  private static void assertPixelsEqual(Bitmap expected, Bitmap actual) {
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        assertEquals(x + "/" + y, expected.getPixel(x, y), actual.getPixel(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void blitsIntoTiles() {
+    final Random random = new Random(3);
+    for (int defaultPixel = 0; defaultPixel <= 1; defaultPixel++) {
+      final Bitmap expected = createPlainBitmap(defaultPixel);
+      final TiledBitmap tiled = blitRandomBitmaps(random, expected, defaultPixel);
+
+      assertTrue(tiled.isTiled());
+      assertPixelsEqual(expected, tiled);
+      assertTrue(tiled.isTiled());
+      assertSame(tiled.getTile(1, 2), tiled.getTileIfTiled(1, 2));
+
+      tiled.getByteArray();
+      assertFalse(tiled.isTiled());
+      assertNull(tiled.getTileIfTiled(1, 2));
+      assertPixelsEqual(expected, tiled);
+    }
+  }
+
+  @Test
+  public void clipsRunsToThePage() {
+    for (int defaultPixel = 0; defaultPixel <= 1; defaultPixel++) {
+      final TiledBitmap tiled = new TiledBitmap(WIDTH, HEIGHT, defaultPixel, 24, 16);
+
+      // Black across the right and the bottom edge of the page
+      final RunLengthBitmap src = new RunLengthBitmap(40, 30);
+      for (int y = 0; y < src.getHeight(); y++) {
+        src.setLine(y, new int[]{
+            0, 40
+        }, 2);
+      }
+      Bitmaps.blit(src, tiled, WIDTH - 20, HEIGHT - 10, CombinationOperator.XOR);
+
+      final Bitmap lastTile = tiled.getTile(WIDTH / 24, HEIGHT / 16);
+      for (int y = 0; y < lastTile.getHeight(); y++) {
+        for (int x = 0; x < lastTile.getWidth(); x++) {
+          final boolean inPage = x < WIDTH % 24 && y < HEIGHT % 16;
+          assertEquals(x + "/" + y, inPage ? 1 - defaultPixel : defaultPixel, lastTile.getPixel(x, y));
+        }
+      }
+
+      final Rectangle blitted = new Rectangle(WIDTH - 20, HEIGHT - 10, 20, 10);
+      assertEquals(defaultPixel == 0, tiled.isBlank(new Rectangle(0, 0, WIDTH - 20, HEIGHT)));
+      assertEquals(defaultPixel != 0, tiled.isBlank(blitted));
+
+      tiled.getByteArray();
+      assertEquals(defaultPixel == 0, tiled.isBlank(new Rectangle(0, 0, WIDTH - 20, HEIGHT)));
+      assertEquals(defaultPixel != 0, tiled.isBlank(blitted));
+    }
+  }
+
+  @Test
+  public void keepsUntouchedTilesUnallocated() {
+    final TiledBitmap tiled = new TiledBitmap(WIDTH, HEIGHT, 0, 24, 16);
+    final int emptySize = tiled.getMemorySize();
+
+    final Bitmap src = new Bitmap(100, 50);
+    Bitmaps.blit(src, tiled, 10, 10, CombinationOperator.OR);
+    src.setPixel(30, 20, (byte) 1);
+    Bitmaps.blit(src, tiled, 10, 10, CombinationOperator.AND);
+    assertEquals(emptySize, tiled.getMemorySize());
+    assertTrue(tiled.isDefaultTile(0, 0));
+
+    Bitmaps.blit(src, tiled, 10, 10, CombinationOperator.OR);
+    assertEquals(emptySize + 24 / 8 * 16, tiled.getMemorySize());
+    assertFalse(tiled.isDefaultTile(1, 1));
+    assertEquals(1, tiled.getPixel(40, 30));
+    assertFalse(tiled.isBlank(new Rectangle(40, 30, 1, 1)));
+    assertTrue(tiled.isBlank(new Rectangle(41, 0, WIDTH - 41, HEIGHT)));
+  }
+
+  /** Cached bitmaps are read by conversions like these, which mustn't change their size. */
+  @Test
+  public void keepsMemorySizeWhenConverted() {
+    final TiledBitmap tiled = blitRandomBitmaps(new Random(92), createPlainBitmap(0), 0);
+    final int size = tiled.getMemorySize();
+
+    Bitmaps.asBufferedImage(tiled);
+    Bitmaps.asRaster(tiled);
+    Bitmaps.asBufferedImage(tiled, new JBIG2ReadParam(2, 3, 0, 1, null, null), FilterType.Bessel);
+    Bitmaps.asBufferedImage(tiled, new JBIG2ReadParam(1, 1, 0, 0, null, new Dimension(WIDTH / 2, HEIGHT / 2)),
+        FilterType.Bessel);
+    assertTrue(tiled.isTiled());
+    assertEquals(size, tiled.getMemorySize());
+  }
+
+  @Test
+  public void convertsTileByTile() {
+    final Random random = new Random(17);
+    for (int defaultPixel = 0; defaultPixel <= 1; defaultPixel++) {
+      final Bitmap expected = createPlainBitmap(defaultPixel);
+      final TiledBitmap tiled = blitRandomBitmaps(random, expected, defaultPixel);
+
+      final Rectangle roi = new Rectangle(13, 7, 150, 101);
+      assertPixelsEqual(Bitmaps.extract(roi, expected), Bitmaps.extract(roi, tiled));
+
+      final Raster expectedRaster = Bitmaps.asRaster(expected);
+      final Raster actualRaster = Bitmaps.asRaster(tiled);
+      assertArrayEquals(expectedRaster.getPixels(0, 0, WIDTH, HEIGHT, (int[]) null),
+          actualRaster.getPixels(0, 0, WIDTH, HEIGHT, (int[]) null));
+
+      for (int i = 0; i < 100; i++) {
+        final int x = random.nextInt(WIDTH);
+        final int y = random.nextInt(HEIGHT);
+        final Rectangle area = new Rectangle(x, y, 1 + random.nextInt(WIDTH - x), 1 + random.nextInt(HEIGHT - y));
+        assertEquals(expected.isBlank(area), tiled.isBlank(area));
+      }
+
+      assertTrue(tiled.isTiled());
+    }
+  }
+}
@@ -17,7 +17,9 @@
 
 package org.apache.pdfbox.jbig2.decoder.arithmetic;
 
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.util.Random;
 import javax.imageio.stream.ImageInputStream;
 
 import org.apache.pdfbox.jbig2.decoder.arithmetic.ArithmeticDecoder;
@@ -574,4 +576,63 @@ public class ArithmeticDecoderTest {
 
     }
   }
+
+  // Measures the decoding throughput, ignored in build process
+  @Ignore
+  @Test
+  public void decodeTestWithDurationCalc() throws Throwable {
+    int runs = 20;
+    int decisions = 20000000;
+
+    // mostly zero bytes give long runs of MPS decisions, similar to sparse page content
+    byte[] data = new byte[1 << 20];
+    Random random = new Random(42);
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (random.nextInt(16) == 0 ? random.nextInt(256) : 0);
+    }
+
+    long avg = 0;
+    for (int i = 0; i < runs; i++) {
+      long time = System.currentTimeMillis();
+
+      ArithmeticDecoder decoder = new ArithmeticDecoder(data);
+      CX cx = new CX(65536, 0);
+      int context = 0;
+      for (int j = 0; j < decisions; j++) {
+        cx.setIndex(context);
+        context = ((context << 1) | decoder.decode(cx)) & 0xffff;
+      }
+
+      long duration = System.currentTimeMillis() - time;
+      System.out.println((i + 1) + ": " + duration + " ms");
+      avg += duration;
+    }
+    System.out.println("Average: " + avg / runs);
+  }
+
+  @Test
+  public void decodeFromDataEqualsDecodeFromStream() throws Throwable {
+    InputStream is = getClass().getResourceAsStream("/images/arith/encoded testsequence");
+    DefaultInputStreamFactory factory = new DefaultInputStreamFactory();
+    ImageInputStream iis = factory.getInputStream(is);
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    int b;
+    while ((b = iis.read()) != -1) {
+      baos.write(b);
+    }
+    iis.seek(0);
+
+    ArithmeticDecoder streamDecoder = new ArithmeticDecoder(iis);
+    ArithmeticDecoder dataDecoder = new ArithmeticDecoder(baos.toByteArray());
+    CX streamCx = new CX(1, 0);
+    CX dataCx = new CX(1, 0);
+
+    // decode well beyond the end of the data to cover its handling as well
+    for (int i = 0; i < 4096; i++) {
+      Assert.assertEquals(streamDecoder.decode(streamCx), dataDecoder.decode(dataCx));
+      Assert.assertEquals(streamDecoder.getA(), dataDecoder.getA());
+      Assert.assertEquals(streamDecoder.getC(), dataDecoder.getC());
+    }
+  }
 }
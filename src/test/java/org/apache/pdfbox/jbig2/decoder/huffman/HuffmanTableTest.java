@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.decoder.huffman;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.apache.pdfbox.jbig2.decoder.huffman.HuffmanTable.Code;
+import org.apache.pdfbox.jbig2.io.SubInputStream;
+import org.junit.Test;
+
+public class HuffmanTableTest {
+
+  @Test
+  public void decodeStandardTable() throws IOException {
+    // B.1: 0|0101 = 5, 10|00000100 = 20, 110|0000000000011100 = 300, 111|0...0 = 65808
+    final ImageInputStream iis = stream("0010110000001001100000000000011100111" + "00000000000000000000000000000000");
+
+    final HuffmanTable table = StandardTables.getTable(1);
+    assertEquals(5, table.decode(iis));
+    assertEquals(20, table.decode(iis));
+    assertEquals(300, table.decode(iis));
+    assertEquals(65808, table.decode(iis));
+    assertEquals(69, iis.getStreamPosition() * 8 + iis.getBitOffset());
+  }
+
+  @Test
+  public void decodeCodesLongerThanOneLookup() throws IOException {
+    // codes: 0 -> 0, 10 -> 1, 1100000000000 -> 2, 1100000000001 -> 3
+    final HuffmanTable table = new FixedSizeTable(codes(1, 2, 13, 13));
+
+    final ImageInputStream iis = stream("1100000000001" + "0" + "1100000000000" + "10" + "0");
+    assertEquals(3, table.decode(iis));
+    assertEquals(0, table.decode(iis));
+    assertEquals(2, table.decode(iis));
+    assertEquals(1, table.decode(iis));
+    assertEquals(0, table.decode(iis));
+  }
+
+  @Test
+  public void decodeFromSubInputStream() throws IOException {
+    final HuffmanTable table = new FixedSizeTable(codes(1, 2, 13, 13));
+
+    final SubInputStream sis = new SubInputStream(stream("1100000000001" + "0" + "1100000000000" + "10" + "0"), 0, 4);
+    assertEquals(3, table.decode(sis));
+    assertEquals(0, table.decode(sis));
+    assertEquals(2, table.decode(sis));
+    assertEquals(1, table.decode(sis));
+    assertEquals(0, table.decode(sis));
+    assertEquals(30, sis.getStreamPosition() * 8 + sis.getBitOffset());
+  }
+
+  @Test
+  public void decodeShortCodesAtEndOfStream() throws IOException {
+    final HuffmanTable table = new FixedSizeTable(codes(1, 2, 13, 13));
+
+    final ImageInputStream iis = stream("10000000");
+    assertEquals(1, table.decode(iis));
+    for (int i = 0; i < 6; i++) {
+      assertEquals(0, table.decode(iis));
+    }
+    assertEquals(8, iis.getStreamPosition() * 8 + iis.getBitOffset());
+  }
+
+  @Test(expected = EOFException.class)
+  public void decodeTruncatedCodeThrowsException() throws IOException {
+    final HuffmanTable table = new FixedSizeTable(codes(1, 2, 13, 13));
+    table.decode(stream("11000000"));
+  }
+
+  private static List<Code> codes(int... prefixLengths) {
+    final List<Code> codes = new ArrayList<Code>();
+    for (int i = 0; i < prefixLengths.length; i++) {
+      codes.add(new Code(prefixLengths[i], 0, i, false));
+    }
+    return codes;
+  }
+
+  private static ImageInputStream stream(String bits) {
+    final byte[] data = new byte[(bits.length() + 7) / 8];
+    for (int i = 0; i < bits.length(); i++) {
+      if (bits.charAt(i) == '1') {
+        data[i >> 3] |= 0x80 >> (i & 7);
+      }
+    }
+    return new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+  }
+}
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertArrayEquals;
 import java.awt.Rectangle;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Random;
 
 import javax.imageio.stream.ImageInputStream;
 
@@ -75,4 +76,53 @@ public class BitmapsBlitTest {
     assertArrayEquals(srcData, dstRegionData);
   }
 
+  @Test
+  public void testShiftedBlitOfWideBitmap() {
+    final Random random = new Random(42);
+
+    // wide enough to be combined word-wise, placed at an x location that is not byte-aligned
+    final Bitmap src = new Bitmap(301, 7);
+    for (int y = 0; y < src.getHeight(); y++) {
+      for (int x = 0; x < src.getWidth(); x++) {
+        src.setPixel(x, y, (byte) random.nextInt(2));
+      }
+    }
+
+    for (CombinationOperator op : new CombinationOperator[]{
+        CombinationOperator.OR, CombinationOperator.XOR
+    }) {
+      final Bitmap dst = new Bitmap(400, 20);
+      random.nextBytes(dst.getByteArray());
+      final Bitmap expected = new Bitmap(dst.getWidth(), dst.getHeight());
+      System.arraycopy(dst.getByteArray(), 0, expected.getByteArray(), 0, dst.getByteArray().length);
+
+      final int xLocation = 13;
+      final int yLocation = 5;
+      for (int y = 0; y < src.getHeight(); y++) {
+        for (int x = 0; x < src.getWidth(); x++) {
+          final int oldPixel = expected.getPixel(x + xLocation, y + yLocation);
+          final int newPixel = src.getPixel(x, y);
+          setPixel(expected, x + xLocation, y + yLocation, op == CombinationOperator.OR
+              ? oldPixel | newPixel
+              : oldPixel ^ newPixel);
+        }
+      }
+
+      Bitmaps.blit(src, dst, xLocation, yLocation, op);
+
+      assertArrayEquals(expected.getByteArray(), dst.getByteArray());
+    }
+  }
+
+  /** Unlike {@link Bitmap#setPixel(int, int, byte)}, this is able to clear a pixel, too. */
+  private static void setPixel(Bitmap bitmap, int x, int y, int value) {
+    final int index = bitmap.getByteIndex(x, y);
+    final int mask = 0x80 >> (x & 0x07);
+    if (value != 0) {
+      bitmap.setByte(index, (byte) (bitmap.getByte(index) | mask));
+    } else {
+      bitmap.setByte(index, (byte) (bitmap.getByte(index) & ~mask));
+    }
+  }
+
 }
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
+import org.junit.Test;
+
+public class ShiftedBitmapCacheTest {
+
+  @Test
+  public void blitEqualsBitmapsBlit() {
+    final Random random = new Random(42);
+    final ShiftedBitmapCache cache = new ShiftedBitmapCache();
+
+    final int[] widths = {
+        1, 5, 8, 13, 24, 150
+    };
+    for (int index = 0; index < widths.length; index++) {
+      final int width = widths[index];
+      final Bitmap symbol = new Bitmap(width, 9);
+      random.nextBytes(symbol.getByteArray());
+
+      for (CombinationOperator op : CombinationOperator.values()) {
+        // placements inside the target as well as clipped ones
+        for (int x = -10; x < 200; x += 3) {
+          final Bitmap expected = new Bitmap(180, 20);
+          random.nextBytes(expected.getByteArray());
+          final Bitmap dst = new Bitmap(expected.getWidth(), expected.getHeight());
+          System.arraycopy(expected.getByteArray(), 0, dst.getByteArray(), 0, dst.getByteArray().length);
+
+          final int y = x % 13;
+          try {
+            Bitmaps.blit(symbol, expected, x, y, op);
+          } catch (IndexOutOfBoundsException e) {
+            continue;
+          }
+          cache.blit(index, symbol, dst, x, y, op);
+
+          assertArrayEquals(expected.getByteArray(), dst.getByteArray());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void blitWithoutBudget() {
+    final Bitmap symbol = new Bitmap(13, 4);
+    new Random(7).nextBytes(symbol.getByteArray());
+
+    final Bitmap expected = new Bitmap(40, 10);
+    final Bitmap dst = new Bitmap(40, 10);
+    Bitmaps.blit(symbol, expected, 3, 2, CombinationOperator.OR);
+
+    final ShiftedBitmapCache cache = new ShiftedBitmapCache(0);
+    assertNull(cache.getCache());
+    cache.blit(0, symbol, dst, 3, 2, CombinationOperator.OR);
+
+    assertArrayEquals(expected.getByteArray(), dst.getByteArray());
+  }
+
+  @Test
+  public void keepsVariantsWithinBudget() {
+    final Bitmap symbol = new Bitmap(64, 64);
+    new Random(11).nextBytes(symbol.getByteArray());
+    final Bitmap dst = new Bitmap(100, 100);
+
+    // Each variant takes 9 * 64 bytes, so two of them exceed the budget
+    final ShiftedBitmapCache cache = new ShiftedBitmapCache(1000);
+    cache.blit(0, symbol, dst, 3, 0, CombinationOperator.OR);
+    cache.blit(0, symbol, dst, 3, 0, CombinationOperator.OR);
+    cache.blit(1, symbol, dst, 3, 0, CombinationOperator.OR);
+
+    assertEquals(1, cache.getCache().getStatistics().getHitCount());
+    assertEquals(1, cache.getCache().getStatistics().getEvictionCount());
+    assertEquals(576, cache.getCache().getStatistics().getResidentBytes());
+  }
+
+  @Test
+  public void keepsVariantsPerInstance() {
+    final Bitmap symbol = new Bitmap(16, 4);
+    final ShiftedBitmapCache cache = new ShiftedBitmapCache();
+    new ShiftedBitmapCache().blit(0, symbol, new Bitmap(40, 10), 3, 0, CombinationOperator.OR);
+
+    assertEquals(0, cache.getCache().getStatistics().getEntryCount());
+  }
+}
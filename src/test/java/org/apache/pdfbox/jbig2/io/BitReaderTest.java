@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.junit.Test;
+
+public class BitReaderTest {
+
+  @Test
+  public void readBitsLikeImageInputStream() throws IOException {
+    final Random random = new Random(42);
+    final byte[] data = new byte[10000];
+    random.nextBytes(data);
+
+    final ImageInputStream expected = new MemoryCacheImageInputStream(new ByteArrayInputStream(data, 100, 9000));
+    final BitReader actual = new BitReader(data, 100, 9000);
+
+    while (true) {
+      final int operation = random.nextInt(4);
+      // ImageInputStreamImpl loses leading bits if they span more than 8 bytes
+      final int numBits = random.nextInt(65 - expected.getBitOffset());
+
+      String expectedResult;
+      try {
+        if (operation == 0) {
+          expectedResult = String.valueOf(expected.readBit());
+          assertEquals(expectedResult, String.valueOf(actual.readBit()));
+        } else if (operation == 1) {
+          expectedResult = String.valueOf(expected.readBits(numBits));
+          assertEquals(expectedResult, String.valueOf(actual.readBits(numBits)));
+        } else if (operation == 2 && numBits > 0 && numBits <= BitReader.MAX_PEEK_BITS) {
+          final long position = expected.getStreamPosition();
+          final int bitOffset = expected.getBitOffset();
+          expectedResult = String.valueOf(expected.readBits(numBits));
+          expected.seek(position);
+          expected.setBitOffset(bitOffset);
+          assertTrue(actual.hasBits(numBits));
+          assertEquals(expectedResult, String.valueOf(actual.peekBits(numBits)));
+        } else {
+          final long position = expected.getStreamPosition();
+          final int bitOffset = expected.getBitOffset();
+          expected.seek(Math.max(0, position - 5));
+          actual.seek(Math.max(0, position - 5), 0);
+          expected.seek(position);
+          expected.setBitOffset(bitOffset);
+          actual.seek(position, bitOffset);
+        }
+      } catch (EOFException e) {
+        break;
+      }
+
+      assertEquals(expected.getStreamPosition(), actual.getPosition());
+      assertEquals(expected.getBitOffset(), actual.getBitOffset());
+    }
+  }
+
+  @Test
+  public void peekBeyondEndReadsZeros() throws IOException {
+    final BitReader reader = new BitReader(new byte[]{
+        (byte) 0xa5, 0x0f
+    }, 0, 2);
+
+    reader.skipBits(3);
+    assertEquals(0x287800, reader.peekBits(24));
+    assertFalse(reader.hasBits(14));
+    assertTrue(reader.hasBits(13));
+
+    try {
+      reader.readBits(14);
+      fail("EOFException expected");
+    } catch (EOFException e) {
+      assertEquals(0, reader.getPosition());
+      assertEquals(3, reader.getBitOffset());
+    }
+
+    reader.skipBits(20);
+    assertEquals(2, reader.getPosition());
+    assertEquals(7, reader.getBitOffset());
+    reader.seek(1, 4);
+    assertEquals(0x0f, reader.readBits(4));
+  }
+
+  @Test
+  public void fetchesDataOnDemand() throws IOException {
+    final byte[] data = new byte[100];
+    new Random(7).nextBytes(data);
+
+    // Provides the data in chunks of 3 bytes
+    final BitReader reader = new BitReader(ByteBuffer.allocate(0)) {
+      @Override
+      protected boolean fetch(long position) {
+        if (position >= data.length) {
+          return false;
+        }
+        final int length = (int) Math.min(3, data.length - position);
+        setData(ByteBuffer.wrap(data, (int) position, length).slice(), position, length);
+        return true;
+      }
+    };
+
+    final BitReader expected = new BitReader(data, 0, data.length);
+    for (int i = 0; i < 80; i++) {
+      assertEquals(expected.readBits(10), reader.readBits(10));
+    }
+    assertFalse(reader.hasBits(1));
+  }
+}
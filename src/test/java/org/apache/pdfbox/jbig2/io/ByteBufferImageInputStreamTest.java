@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ByteBufferImageInputStreamTest {
+
+  @Test
+  public void readRemainingBytesOfBuffer() throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(new byte[]{
+        1, 2, 3, 4, 5, 6
+    });
+    ((Buffer) buffer).position(2).limit(5);
+
+    final ByteBufferImageInputStream iis = new ByteBufferImageInputStream(buffer);
+    assertEquals(3, iis.length());
+    assertEquals(3, iis.read());
+
+    final SubInputStream sis = new SubInputStream(iis, 1, 10);
+    assertArrayEquals(new byte[]{
+        4, 5
+    }, sis.readRemainingBytes());
+    // Reading the window doesn't move the wrapped stream
+    assertEquals(2, iis.read(new byte[4]));
+
+    assertEquals(2, buffer.position());
+    assertEquals(5, buffer.limit());
+  }
+
+  @Test
+  public void readRemainingDataWithoutCopy() throws IOException {
+    final byte[] data = new byte[]{
+        1, 2, 3, 4, 5, 6
+    };
+    final SubInputStream sis = new SubInputStream(new SubInputStream(new ByteBufferImageInputStream(data), 1, 5),
+        1, 3);
+
+    final ByteBuffer window = sis.getData();
+    assertTrue(window.isReadOnly());
+    assertEquals(0, window.position());
+    assertEquals(3, window.limit());
+    assertEquals(3, window.get(0));
+
+    assertEquals(3, sis.read());
+    final ByteBuffer remaining = sis.readRemainingData();
+    assertEquals(2, remaining.limit());
+    assertEquals(4, remaining.get(0));
+    assertEquals(3, sis.getStreamPosition());
+    assertEquals(0, sis.readRemainingData().limit());
+
+    // The views share the content of the array
+    data[3] = 42;
+    assertEquals(42, remaining.get(0));
+    assertEquals(42, sis.getData().get(1));
+  }
+
+  @Test
+  public void readEmptyBuffer() throws IOException {
+    final ByteBufferImageInputStream iis = new ByteBufferImageInputStream(new byte[0]);
+    assertEquals(0, iis.length());
+    assertEquals(-1, iis.read());
+    assertEquals(0, new SubInputStream(iis, 0, 10).readRemainingBytes().length);
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.JBIG2DocumentFacade;
+import org.apache.pdfbox.jbig2.JBIG2Globals;
+import org.apache.pdfbox.jbig2.JBIG2ImageReader;
+import org.apache.pdfbox.jbig2.JBIG2ImageReaderSpi;
+import org.apache.pdfbox.jbig2.err.JBIG2Exception;
+import org.junit.Test;
+
+public class MappedImageInputStreamTest {
+
+  @Test
+  public void readLikeImageInputStream() throws IOException {
+    final Random random = new Random(42);
+    final byte[] data = new byte[10000];
+    random.nextBytes(data);
+
+    final ImageInputStream expected = new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+    final MappedImageInputStream actual = new MappedImageInputStream(createFile(data), 1000);
+    assertEquals(data.length, actual.length());
+
+    while (true) {
+      final int operation = random.nextInt(3);
+      if (operation == 0) {
+        assertEquals(expected.read(), actual.read());
+      } else if (operation == 1) {
+        final int len = random.nextInt(2500);
+        final byte[] expectedBytes = new byte[len];
+        final byte[] actualBytes = new byte[len];
+        assertEquals(expected.read(expectedBytes), actual.read(actualBytes));
+        assertArrayEquals(expectedBytes, actualBytes);
+      } else {
+        final long position = Math.max(0, expected.getStreamPosition() - random.nextInt(100));
+        expected.seek(position);
+        actual.seek(position);
+      }
+
+      assertEquals(expected.getStreamPosition(), actual.getStreamPosition());
+      if (expected.getStreamPosition() >= data.length) {
+        assertEquals(-1, actual.read());
+        break;
+      }
+    }
+  }
+
+  @Test
+  public void subInputStreamsReadMappedWindows() throws IOException {
+    final byte[] data = new byte[5000];
+    new Random(42).nextBytes(data);
+
+    final SubInputStream document = new SubInputStream(new MappedImageInputStream(createFile(data), 1000), 0,
+        Long.MAX_VALUE);
+
+    // within a single region
+    assertWindow(data, 1100, 1800, new SubInputStream(document, 1100, 700));
+    // spanning several regions
+    assertWindow(data, 900, 3100, new SubInputStream(document, 900, 2200));
+    // exceeding the end of the file
+    assertWindow(data, 4500, 5000, new SubInputStream(document, 4500, 1000));
+
+    // exceeding the window of the wrapped stream
+    final SubInputStream segment = new SubInputStream(document, 1500, 1000);
+    assertWindow(data, 1600, 2500, new SubInputStream(segment, 100, 2000));
+    assertWindow(data, 2500, 2500, new SubInputStream(segment, 1200, 100));
+  }
+
+  @Test
+  public void decodeMappedFile() throws Exception {
+    assertDecodesMappedFile("/images/sampledata_page3.jb2", null);
+  }
+
+  @Test
+  public void decodeMappedFileWithMMRCodedSymbols() throws Exception {
+    assertDecodesMappedFile("/com/levigo/jbig2/github/21.jb2", "/com/levigo/jbig2/github/21.glob");
+  }
+
+  private void assertDecodesMappedFile(String filepath, String globalsPath) throws Exception {
+    final InputStream is = getClass().getResourceAsStream(filepath);
+    final Bitmap expected = decode(new DefaultInputStreamFactory().getInputStream(is), globalsPath);
+    final Bitmap actual = decode(new MappedImageInputStream(new File(getClass().getResource(filepath).toURI())),
+        globalsPath);
+
+    assertArrayEquals(expected.getByteArray(), actual.getByteArray());
+  }
+
+  private static void assertWindow(byte[] data, int start, int end, SubInputStream sis) throws IOException {
+    assertArrayEquals(Arrays.copyOfRange(data, start, end), sis.readRemainingBytes());
+    assertEquals(-1, sis.read());
+  }
+
+  /**
+   * Decodes the first page without the reader, whose page cache would return the first result
+   * again.
+   */
+  private Bitmap decode(ImageInputStream iis, String globalsPath) throws IOException, JBIG2Exception {
+    JBIG2Globals globals = null;
+    if (globalsPath != null) {
+      final InputStream is = getClass().getResourceAsStream(globalsPath);
+      globals = new JBIG2ImageReader(new JBIG2ImageReaderSpi()).processGlobals(
+          new DefaultInputStreamFactory().getInputStream(is));
+    }
+    return new JBIG2DocumentFacade(iis, globals).getPageBitmap(1);
+  }
+
+  private static File createFile(byte[] data) throws IOException {
+    final File file = File.createTempFile("jbig2", ".bin");
+    file.deleteOnExit();
+
+    final FileOutputStream fos = new FileOutputStream(file);
+    try {
+      fos.write(data);
+    } finally {
+      fos.close();
+    }
+    return file;
+  }
+}
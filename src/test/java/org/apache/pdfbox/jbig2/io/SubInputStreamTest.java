@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.junit.Test;
+
+public class SubInputStreamTest {
+
+  @Test
+  public void readBitsLikeImageInputStream() throws IOException {
+    final byte[] data = new byte[10000];
+    new Random(1).nextBytes(data);
+
+    readBitsLikeImageInputStream(data, new MemoryCacheImageInputStream(new ByteArrayInputStream(data)));
+  }
+
+  @Test
+  public void readBitsOfInMemoryDataLikeImageInputStream() throws IOException {
+    final byte[] data = new byte[10000];
+    new Random(1).nextBytes(data);
+
+    readBitsLikeImageInputStream(data, new ByteBufferImageInputStream(data));
+  }
+
+  private static void readBitsLikeImageInputStream(byte[] data, ImageInputStream wrapped) throws IOException {
+    final Random random = new Random(42);
+    final ImageInputStream expected = new MemoryCacheImageInputStream(new ByteArrayInputStream(data, 100, 9000));
+    final SubInputStream actual = new SubInputStream(wrapped, 100, 9000);
+
+    while (true) {
+      final int operation = random.nextInt(9);
+      final int numBits = random.nextInt(65);
+
+      final String expectedResult = read(expected, operation, numBits);
+      assertEquals(expectedResult, read(actual, operation, numBits));
+
+      if (expectedResult.equals("EOF")) {
+        break;
+      }
+
+      assertEquals(expected.getStreamPosition(), actual.getStreamPosition());
+      assertEquals(expected.getBitOffset(), actual.getBitOffset());
+    }
+  }
+
+  @Test
+  public void peekBitsDoesNotMoveStreamPosition() throws IOException {
+    final SubInputStream sis = new SubInputStream(new MemoryCacheImageInputStream(new ByteArrayInputStream(new byte[]{
+        (byte) 0xa5, 0x0f
+    })), 0, 2);
+
+    sis.advanceBits(3);
+    assertEquals(0x28, sis.peekBits(8));
+    assertEquals(0x28, sis.peekBits(8));
+    assertEquals(0, sis.getStreamPosition());
+    assertEquals(3, sis.getBitOffset());
+
+    sis.advanceBits(6);
+    assertEquals(1, sis.getStreamPosition());
+    assertEquals(1, sis.getBitOffset());
+    assertEquals(0x0f, sis.peekBits(7));
+    assertEquals(-1, sis.peekBits(8));
+  }
+
+  private static String read(ImageInputStream iis, int operation, int numBits) throws IOException {
+    try {
+      if (operation < 4) {
+        return String.valueOf(iis.readBit());
+      } else if (operation < 8) {
+        return String.valueOf(iis.readBits(numBits));
+      } else {
+        final long position = iis.getStreamPosition();
+        final int bitOffset = iis.getBitOffset();
+        iis.seek(Math.max(0, position - 5));
+        iis.seek(position);
+        iis.setBitOffset(bitOffset);
+        return "seek";
+      }
+    } catch (EOFException e) {
+      return "EOF";
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.segments;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.decoder.huffman.HuffmanTable;
+import org.apache.pdfbox.jbig2.image.Bitmaps;
+import org.apache.pdfbox.jbig2.image.ShiftedBitmapCache;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
+import org.junit.Test;
+
+public class CompositeSymbolTableTest {
+
+  @Test
+  public void concatenatesTables() {
+    final SymbolTable first = new TestSymbolTable(2);
+    final SymbolTable empty = new TestSymbolTable(0);
+    final SymbolTable second = new TestSymbolTable(3);
+
+    final SymbolTable composite = new CompositeSymbolTable(Arrays.asList(first, empty, second));
+
+    assertEquals(5, composite.size());
+    assertSame(first.getSymbol(0), composite.getSymbol(0));
+    assertSame(first.getSymbol(1), composite.getSymbol(1));
+    assertSame(second.getSymbol(0), composite.getSymbol(2));
+    assertSame(second.getSymbol(2), composite.getSymbol(4));
+  }
+
+  @Test
+  public void blitsSymbolsOfTheirTable() {
+    final SymbolTable first = new TestSymbolTable(2);
+    final SymbolTable second = new TestSymbolTable(3);
+    final SymbolTable composite = new CompositeSymbolTable(Arrays.asList(first, second));
+
+    final Bitmap expected = new Bitmap(16, 1);
+    final Bitmap actual = new Bitmap(16, 1);
+    Bitmaps.blit(second.getSymbol(2), expected, 5, 0, CombinationOperator.OR);
+    composite.blit(4, actual, 5, 0, CombinationOperator.OR);
+
+    assertArrayEquals(expected.getByteArray(), actual.getByteArray());
+  }
+
+  @Test
+  public void sharesSymbolCodeTablesWithEqualCodeLengths() {
+    final CompositeSymbolTable composite = new CompositeSymbolTable(
+        Collections.<SymbolTable> singletonList(new TestSymbolTable(3)));
+
+    final HuffmanTable table = composite.getSymbolCodeTable(new int[]{
+        1, 2, 2
+    });
+
+    assertSame(table, composite.getSymbolCodeTable(new int[]{
+        1, 2, 2
+    }));
+    assertNotSame(table, composite.getSymbolCodeTable(new int[]{
+        2, 1, 2
+    }));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void getSymbolThrowsExceptionTest() {
+    new CompositeSymbolTable(Collections.<SymbolTable> singletonList(new TestSymbolTable(2))).getSymbol(2);
+  }
+
+  private static class TestSymbolTable implements SymbolTable {
+    private final Bitmap[] symbols;
+    private final ShiftedBitmapCache shiftedSymbols = new ShiftedBitmapCache();
+
+    TestSymbolTable(int size) {
+      symbols = new Bitmap[size];
+      for (int i = 0; i < size; i++) {
+        symbols[i] = new Bitmap(i + 1, 1);
+        symbols[i].setByte(0, (byte) 0xff);
+      }
+    }
+
+    public int size() {
+      return symbols.length;
+    }
+
+    public Bitmap getSymbol(int index) {
+      return symbols[index];
+    }
+
+    public void blit(int index, Bitmap dst, int x, int y, CombinationOperator combinationOperator) {
+      shiftedSymbols.blit(index, symbols[index], dst, x, y, combinationOperator);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.segments;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Rectangle;
+import java.util.Random;
+
+import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.SubBitmap;
+import org.apache.pdfbox.jbig2.image.Bitmaps;
+import org.apache.pdfbox.jbig2.util.CombinationOperator;
+import org.junit.Test;
+
+public class SymbolArenaTest {
+
+  /** Creates plain symbols alternating with sub-bitmaps of a collective bitmap. */
+  private static Bitmap[] createSymbols(Random random) {
+    final Bitmap collective = new Bitmap(200, 9);
+    random.nextBytes(collective.getByteArray());
+
+    final Bitmap[] symbols = new Bitmap[20];
+    for (int i = 0, x = 0; i < symbols.length; i++) {
+      final int width = 1 + random.nextInt(19);
+      if ((i & 1) == 0) {
+        symbols[i] = new Bitmap(width, 1 + random.nextInt(12));
+        random.nextBytes(symbols[i].getByteArray());
+      } else {
+        symbols[i] = collective.subBitmap(new Rectangle(x, 0, width, collective.getHeight()));
+        x += width;
+      }
+    }
+    return symbols;
+  }
+
+  @Test
+  public void storesSymbolsInOneArray() {
+    final Bitmap[] symbols = createSymbols(new Random(42));
+    final SymbolArena arena = new SymbolArena(symbols);
+
+    assertEquals(symbols.length, arena.size());
+
+    byte[] data = null;
+    for (int i = 0; i < symbols.length; i++) {
+      final SubBitmap symbol = (SubBitmap) arena.getSymbol(i);
+      assertEquals(symbols[i].getWidth(), symbol.getWidth());
+      assertEquals(symbols[i].getHeight(), symbol.getHeight());
+
+      for (int index = 0; index < symbol.getRowStride() * symbol.getHeight(); index++) {
+        assertEquals(symbols[i].getByte(index), symbol.getByte(index));
+      }
+
+      if (null == data) {
+        data = symbol.getAlignedData();
+      }
+      assertSame(data, symbol.getAlignedData());
+    }
+  }
+
+  @Test
+  public void blitsSymbolsInPlace() {
+    final Random random = new Random(4711);
+    final Bitmap[] symbols = createSymbols(random);
+    final SymbolArena arena = new SymbolArena(symbols);
+
+    for (int i = 0; i < 200; i++) {
+      final int index = random.nextInt(symbols.length);
+      final CombinationOperator op = CombinationOperator.values()[random.nextInt(5)];
+      final int x = random.nextInt(60 - symbols[index].getWidth());
+      final int y = random.nextInt(20 - symbols[index].getHeight());
+
+      final Bitmap expected = new Bitmap(60, 20);
+      random.nextBytes(expected.getByteArray());
+      final Bitmap actual = new Bitmap(60, 20);
+      System.arraycopy(expected.getByteArray(), 0, actual.getByteArray(), 0, expected.getByteArray().length);
+
+      Bitmaps.blit(symbols[index], expected, x, y, op);
+      arena.blit(index, actual, x, y, op);
+
+      assertArrayEquals(expected.getByteArray(), actual.getByteArray());
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.segments;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.apache.pdfbox.jbig2.decoder.huffman.HuffmanTable;
+import org.apache.pdfbox.jbig2.io.SubInputStream;
+import org.junit.Test;
+
+public class TableTest {
+
+  @Test
+  public void huffmanTableIsDecodedOnce() throws Throwable {
+    final byte[] segmentData = new byte[]{
+        0x12, // HTPS = 2, HTRS = 2, no OOB
+        0, 0, 0, 0, // HTLOW = 0
+        0, 0, 0, 8, // HTHIGH = 8
+        0x6a, // 0-3: prefix length 1, range length 2; 4-7: prefix length 2, range length 2
+        (byte) 0xf0 // lower and upper range lines: prefix length 3
+    };
+    final ImageInputStream iis = new MemoryCacheImageInputStream(new ByteArrayInputStream(segmentData));
+
+    final Table table = new Table();
+    table.init(null, new SubInputStream(iis, 0, segmentData.length));
+
+    final HuffmanTable huffmanTable = table.getHuffmanTable();
+    assertSame(huffmanTable, table.getHuffmanTable());
+
+    // 0|11 = 3, 10|01 = 5
+    final ImageInputStream data = new MemoryCacheImageInputStream(new ByteArrayInputStream(new byte[]{
+        0x72
+    }));
+    assertEquals(3, huffmanTable.decode(data));
+    assertEquals(5, huffmanTable.decode(data));
+  }
+}
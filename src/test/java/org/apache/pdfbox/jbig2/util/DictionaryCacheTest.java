@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.pdfbox.jbig2.Bitmap;
+import org.apache.pdfbox.jbig2.JBIG2DocumentFacade;
+import org.apache.pdfbox.jbig2.JBIG2Globals;
+import org.apache.pdfbox.jbig2.JBIG2ImageReader;
+import org.apache.pdfbox.jbig2.JBIG2ImageReaderSpi;
+import org.apache.pdfbox.jbig2.err.JBIG2Exception;
+import org.apache.pdfbox.jbig2.util.cache.CacheStatistics;
+import org.apache.pdfbox.jbig2.util.cache.DictionaryCache;
+import org.junit.After;
+import org.junit.Test;
+
+public class DictionaryCacheTest {
+
+  @After
+  public void disableCache() {
+    DictionaryCache.setMaxSize(0);
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    assertNull(DictionaryCache.getCache());
+  }
+
+  @Test
+  public void testGlobalDictionaryIsDecodedOnce() throws IOException, JBIG2Exception {
+    DictionaryCache.setMaxSize(16 * 1024 * 1024);
+    final CacheStatistics statistics = DictionaryCache.getCache().getStatistics();
+
+    final Bitmap first = decodeWithGlobals();
+    final long misses = statistics.getMissCount();
+    final Bitmap second = decodeWithGlobals();
+
+    assertTrue(misses > 0);
+    assertEquals(misses, statistics.getMissCount());
+    assertEquals(misses, statistics.getHitCount());
+    assertArrayEquals(first.getByteArray(), second.getByteArray());
+  }
+
+  private Bitmap decodeWithGlobals() throws IOException, JBIG2Exception {
+    final InputStream imageStream = getClass().getResourceAsStream("/com/levigo/jbig2/github/21.jb2");
+    final InputStream globalsStream = getClass().getResourceAsStream("/com/levigo/jbig2/github/21.glob");
+    final ImageInputStream globalsIIS = ImageIO.createImageInputStream(globalsStream);
+    final ImageInputStream imageIIS = ImageIO.createImageInputStream(imageStream);
+
+    try {
+      final JBIG2Globals globals = new JBIG2ImageReader(new JBIG2ImageReaderSpi()).processGlobals(globalsIIS);
+      return new JBIG2DocumentFacade(imageIIS, globals).getPageBitmap(1);
+    } finally {
+      globalsIIS.close();
+      imageIIS.close();
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pdfbox.jbig2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.apache.pdfbox.jbig2.util.cache.CacheStatistics;
+import org.apache.pdfbox.jbig2.util.cache.LRUCache;
+import org.apache.pdfbox.jbig2.util.cache.LRUCacheBridge;
+import org.junit.Test;
+
+public class LRUCacheTest {
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    final LRUCache cache = new LRUCache(100);
+    final Object a = new Object();
+    final Object b = new Object();
+    final Object c = new Object();
+
+    cache.put("a", a, 40);
+    cache.put("b", b, 40);
+
+    // touch "a", so that "b" becomes the eldest entry
+    assertSame(a, cache.get("a"));
+
+    cache.put("c", c, 40);
+
+    assertSame(a, cache.get("a"));
+    assertNull(cache.get("b"));
+    assertSame(c, cache.get("c"));
+    assertEquals(80, cache.getSize());
+  }
+
+  @Test
+  public void testReplaceAndRemove() {
+    final LRUCache cache = new LRUCache(100);
+    final Object a = new Object();
+    final Object b = new Object();
+
+    assertNull(cache.put("a", a, 60));
+    assertSame(a, cache.put("a", b, 30));
+    assertEquals(30, cache.getSize());
+
+    assertSame(b, cache.remove("a"));
+    assertNull(cache.remove("a"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void testEntryExceedingBudgetIsNotCached() {
+    final LRUCache cache = new LRUCache(100);
+    cache.put("a", new Object(), 50);
+    cache.put("b", new Object(), 101);
+
+    assertNull(cache.get("b"));
+    assertEquals(50, cache.getSize());
+
+    cache.clear();
+    assertNull(cache.get("a"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void testStatistics() {
+    final LRUCache cache = new LRUCache(100);
+    final CacheStatistics statistics = cache.getStatistics();
+
+    cache.get("a");
+    cache.put("a", new Object(), 60);
+    cache.recordLoadTime(2000000);
+    cache.get("a");
+    cache.put("b", new Object(), 60);
+
+    assertEquals(1, statistics.getHitCount());
+    assertEquals(1, statistics.getMissCount());
+    assertEquals(2, statistics.getPutCount());
+    assertEquals(1, statistics.getEvictionCount());
+    assertEquals(1, statistics.getEntryCount());
+    assertEquals(60, statistics.getResidentBytes());
+    assertEquals(1, statistics.getLoadCount());
+    assertEquals(2, statistics.getTotalLoadTime());
+
+    statistics.reset();
+    assertEquals(0, statistics.getHitCount());
+    assertEquals(0, statistics.getEvictionCount());
+    assertEquals(60, statistics.getResidentBytes());
+  }
+
+  @Test
+  public void testStatisticsAreRegisteredAsMBean() throws Exception {
+    new LRUCacheBridge().getCache();
+
+    final ObjectName name = new ObjectName(LRUCacheBridge.OBJECT_NAME);
+    assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    assertTrue(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "HitCount") instanceof Long);
+  }
+}